@@ -0,0 +1,146 @@
+package cli;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Locale;
+
+import encryption.DeflateCodec;
+import encryption.EncryptionUtil;
+import encryption.RSAKeyUtil;
+
+/**
+ * 不需圖形介面的命令列工具，將整個目錄樹加密或解密至另一個鏡像的目錄樹<p>
+ * 加密時以公鑰、解密時以私鑰，各檔案以分段信封的串流模式處理，加密後的檔案附加.enc副檔名。
+ * 中斷後以相同參數重新執行即可接續，已完成的檔案會略過；結束時輸出檔案數與吞吐量。
+ *
+ * <pre>
+ * java -cp EncryptionKeyTool.jar cli.CryptoCli encrypt -key public.pem -in data -out data-encrypted
+ * java -cp EncryptionKeyTool.jar cli.CryptoCli decrypt -key private.pem -in data-encrypted -out data
+ * </pre>
+ *
+ * @author EnixLin
+ *
+ */
+public class CryptoCli {
+
+	private static final String USAGE = "Usage: CryptoCli <encrypt|decrypt> -key <key file> -in <source directory> "
+			+ "-out <target directory>\n"
+			+ "       [-format PEM|DER] [-algorithm RSA|EC|X25519|X448] [-threads N] [-compress] [-overwrite]\n\n"
+			+ "  -key        public key for encrypt, private key for decrypt\n"
+			+ "  -format     key file format, default PEM\n"
+			+ "  -algorithm  key algorithm, default RSA\n"
+			+ "  -threads    worker threads, default the number of CPUs\n"
+			+ "  -compress   deflate compressible files before encryption\n"
+			+ "  -overwrite  process every file again instead of skipping finished outputs";
+
+	public static void main(String[] args) {
+
+		boolean encrypt;
+		Path keyPath = null, sourceRoot = null, targetRoot = null;
+		String format = "PEM", algorithm = "RSA";
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean compress = false, overwrite = false;
+		try {
+			if (args.length == 0 || !(args[0].equals("encrypt") || args[0].equals("decrypt")))
+				throw new IllegalArgumentException("First argument must be encrypt or decrypt.");
+			encrypt = args[0].equals("encrypt");
+			for (int i = 1; i < args.length; i++) {
+				switch (args[i]) {
+				case "-key":
+					keyPath = Paths.get(value(args, ++i));
+					break;
+				case "-in":
+					sourceRoot = Paths.get(value(args, ++i));
+					break;
+				case "-out":
+					targetRoot = Paths.get(value(args, ++i));
+					break;
+				case "-format":
+					format = value(args, ++i).toUpperCase(Locale.ROOT);
+					break;
+				case "-algorithm":
+					algorithm = value(args, ++i);
+					break;
+				case "-threads":
+					threads = Integer.parseInt(value(args, ++i));
+					break;
+				case "-compress":
+					compress = true;
+					break;
+				case "-overwrite":
+					overwrite = true;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+				}
+			}
+			if (keyPath == null || sourceRoot == null || targetRoot == null)
+				throw new IllegalArgumentException("-key, -in and -out are required.");
+			if (!format.equals("PEM") && !format.equals("DER"))
+				throw new IllegalArgumentException("Key format must be PEM or DER.");
+			if (threads < 1)
+				throw new IllegalArgumentException("Threads must be positive.");
+			sourceRoot = sourceRoot.toAbsolutePath().normalize();
+			targetRoot = targetRoot.toAbsolutePath().normalize();
+			if (!Files.isDirectory(sourceRoot))
+				throw new IllegalArgumentException(sourceRoot + " is not a directory.");
+			if (targetRoot.startsWith(sourceRoot) || sourceRoot.startsWith(targetRoot))
+				throw new IllegalArgumentException("Source and target directories must not contain each other.");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		// 金鑰只讀取一次，各執行緒以同一把金鑰建立各自的EncryptionUtil
+		RSAKeyUtil keyUtil = new RSAKeyUtil.Builder().setAlgorithm(algorithm).build();
+		PublicKey publicKey = null;
+		PrivateKey privateKey = null;
+		try {
+			if (encrypt)
+				publicKey = format.equals("PEM") ? keyUtil.readPEMPublicKey(keyPath) : keyUtil.readDERPublicKey(keyPath);
+			else
+				privateKey = format.equals("PEM") ? keyUtil.readPEMPrivateKey(keyPath)
+						: keyUtil.readDERPrivateKey(keyPath);
+		} catch (RuntimeException e) {
+			System.err.println("Cannot read key " + keyPath + ": " + e.getMessage());
+			System.exit(2);
+			return;
+		}
+		PublicKey encryptionKey = publicKey;
+		PrivateKey decryptionKey = privateKey;
+		boolean compression = compress;
+		TreeProcessor processor = new TreeProcessor(encrypt, sourceRoot, targetRoot, overwrite, () -> {
+			EncryptionUtil.Builder builder = new EncryptionUtil.Builder().setPublicKey(encryptionKey)
+					.setPrivateKey(decryptionKey);
+			if (compression)
+				builder.setCompressionCodec(new DeflateCodec());
+			return builder.build();
+		});
+
+		long elapsed = processor.run(threads);
+		printSummary(encrypt ? "Encrypted" : "Decrypted", processor, threads, elapsed);
+		System.exit(processor.getFailedFiles() > 0 ? 1 : 0);
+	}
+
+	private static String value(String[] args, int index) {
+		if (index >= args.length)
+			throw new IllegalArgumentException("Missing value for " + args[index - 1] + ".");
+		return args[index];
+	}
+
+	private static void printSummary(String action, TreeProcessor processor, int threads, long elapsedNanos) {
+		double seconds = Math.max(elapsedNanos, 1) / 1e9;
+		long files = processor.getProcessedFiles();
+		double megabytes = processor.getProcessedBytes() / (1024.0 * 1024.0);
+		System.out.println(String.format(Locale.ROOT,
+				"%s %d files (%.1f MiB) with %d threads in %.2f s, %d skipped, %d failed", action, files, megabytes,
+				threads, seconds, processor.getSkippedFiles(), processor.getFailedFiles()));
+		System.out.println(String.format(Locale.ROOT, "Throughput: %.1f files/s, %.1f MiB/s", files / seconds,
+				megabytes / seconds));
+	}
+}
@@ -0,0 +1,213 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import encryption.EncryptionUtil;
+
+/**
+ * 將整個目錄樹的檔案逐一加密或解密至鏡像的目錄樹<p>
+ * 每個目錄與檔案各為一個ForkJoin工作，子目錄較多或檔案大小不均時由閒置的執行緒竊取工作。
+ * 每個執行緒各自持有一個{@link EncryptionUtil}，以串流模式處理，記憶體用量與檔案大小無關。<br>
+ * 輸出先寫入同目錄的暫存檔(.partial)並寫入磁碟，完成後才更名為正式檔名，並將修改時間設為與來源相同；
+ * 中斷後重新執行時，已存在且修改時間相同的輸出視為已完成而略過，未完成的暫存檔則重新寫入。
+ *
+ * @author EnixLin
+ *
+ */
+final class TreeProcessor {
+
+	/** 加密後檔案的副檔名，解密時只處理有此副檔名的檔案 */
+	static final String ENCRYPTED_SUFFIX = ".enc";
+	private static final String PARTIAL_SUFFIX = ".partial";
+
+	private final boolean encrypt;
+	private final Path sourceRoot;
+	private final Path targetRoot;
+	private final boolean overwrite;
+	private final ThreadLocal<EncryptionUtil> encryptionUtils;
+
+	private final LongAdder processedFiles = new LongAdder();
+	private final LongAdder processedBytes = new LongAdder();
+	private final LongAdder skippedFiles = new LongAdder();
+	private final LongAdder failedFiles = new LongAdder();
+
+	/**
+	 * @param encrypt     true為加密，false為解密
+	 * @param overwrite   true時不略過已完成的輸出
+	 * @param utilFactory 建立加解密工具，每個執行緒呼叫一次
+	 */
+	TreeProcessor(boolean encrypt, Path sourceRoot, Path targetRoot, boolean overwrite,
+			Supplier<EncryptionUtil> utilFactory) {
+		this.encrypt = encrypt;
+		this.sourceRoot = sourceRoot;
+		this.targetRoot = targetRoot;
+		this.overwrite = overwrite;
+		this.encryptionUtils = ThreadLocal.withInitial(utilFactory);
+	}
+
+	/**
+	 * 處理整個目錄樹，個別檔案失敗時記錄後繼續處理其他檔案
+	 *
+	 * @return 耗時(奈秒)
+	 */
+	long run(int parallelism) {
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new DirectoryTask(sourceRoot));
+		} finally {
+			pool.shutdown();
+		}
+		return System.nanoTime() - start;
+	}
+
+	long getProcessedFiles() {
+		return processedFiles.sum();
+	}
+
+	/** 已處理檔案的來源大小總和 */
+	long getProcessedBytes() {
+		return processedBytes.sum();
+	}
+
+	long getSkippedFiles() {
+		return skippedFiles.sum();
+	}
+
+	long getFailedFiles() {
+		return failedFiles.sum();
+	}
+
+	private void processFile(Path source, BasicFileAttributes attributes, Path targetDirectory) {
+		String name = source.getFileName().toString();
+		if (name.endsWith(PARTIAL_SUFFIX) || (!encrypt && !name.endsWith(ENCRYPTED_SUFFIX))) {
+			skippedFiles.increment();
+			return;
+		}
+		Path target = targetDirectory.resolve(
+				encrypt ? name + ENCRYPTED_SUFFIX : name.substring(0, name.length() - ENCRYPTED_SUFFIX.length()));
+		FileTime modified = attributes.lastModifiedTime();
+		if (!overwrite && isDone(target, modified)) {
+			skippedFiles.increment();
+			return;
+		}
+
+		Path partial = targetDirectory.resolve(target.getFileName() + PARTIAL_SUFFIX);
+		try {
+			try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+					FileChannel output = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+							StandardOpenOption.TRUNCATE_EXISTING)) {
+				EncryptionUtil encryptionUtil = encryptionUtils.get();
+				if (encrypt)
+					encryptionUtil.encryptByPublicKey(input, output);
+				else
+					encryptionUtil.decryptByPrivateKey(input, output);
+				// 更名前確保內容已寫入磁碟，當機後存在的正式檔案必定完整
+				output.force(false);
+			}
+			Files.setLastModifiedTime(partial, modified);
+			moveAtomically(partial, target);
+			processedFiles.increment();
+			processedBytes.add(attributes.size());
+		} catch (IOException | RuntimeException e) {
+			failedFiles.increment();
+			try {
+				Files.deleteIfExists(partial);
+			} catch (IOException ignored) {
+				// 重新執行時會覆寫暫存檔
+			}
+			report(source, e);
+		}
+	}
+
+	/**
+	 * 輸出已存在且修改時間與來源相同時，視為前次執行已完成
+	 */
+	private static boolean isDone(Path target, FileTime modified) {
+		try {
+			return Files.getLastModifiedTime(target, LinkOption.NOFOLLOW_LINKS).toMillis() == modified.toMillis();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void report(Path path, Exception e) {
+		System.err.println("Failed: " + path + " - " + e.getMessage());
+	}
+
+	private final class DirectoryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path directory;
+
+		DirectoryTask(Path directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			Path targetDirectory = targetRoot.resolve(sourceRoot.relativize(directory));
+			List<RecursiveAction> tasks = new ArrayList<>();
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+				Files.createDirectories(targetDirectory);
+				for (Path entry : entries) {
+					BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+					if (attributes.isDirectory())
+						tasks.add(new DirectoryTask(entry));
+					else if (attributes.isRegularFile())
+						tasks.add(new FileTask(entry, attributes, targetDirectory));
+				}
+			} catch (IOException e) {
+				failedFiles.increment();
+				report(directory, e);
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	private final class FileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path source;
+		private final BasicFileAttributes attributes;
+		private final Path targetDirectory;
+
+		FileTask(Path source, BasicFileAttributes attributes, Path targetDirectory) {
+			this.source = source;
+			this.attributes = attributes;
+			this.targetDirectory = targetDirectory;
+		}
+
+		@Override
+		protected void compute() {
+			processFile(source, attributes, targetDirectory);
+		}
+	}
+}
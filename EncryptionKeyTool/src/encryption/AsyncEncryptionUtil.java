@@ -0,0 +1,209 @@
+package encryption;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 以CompletableFuture包裝{@link EncryptionUtil2}的非同步工具，RSA運算不佔用呼叫端(例如event loop)的執行緒<p>
+ * 預設使用固定大小的平台執行緒池，適合純CPU運算；與{@link RSAKeyUtil}讀取金鑰檔等I/O混用時，
+ * 可改用虛擬執行緒(需Java 21以上)。同時進行中的工作數有上限，超過時回傳的Future直接以
+ * RejectedExecutionException失敗，呼叫端可據此降速或回應忙碌，不會無限制地堆積工作。
+ *
+ * @author EnixLin
+ *
+ */
+public class AsyncEncryptionUtil implements AutoCloseable {
+
+	private EncryptionUtil2 encryptionUtil;
+	private int threads;
+	private int queueCapacity;
+	private boolean virtualThreads;
+	private Executor executor;
+	/** 由此工具建立的執行緒池，close時關閉；外部給定的executor不關閉 */
+	private ExecutorService ownedExecutor;
+	private Semaphore permits;
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * 預設執行緒數為CPU核心數，等待佇列1024筆
+	 */
+	private AsyncEncryptionUtil() {
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.queueCapacity = 1024;
+	}
+
+	public EncryptionUtil2 getEncryptionUtil() {
+		return encryptionUtil;
+	}
+
+	public static class Builder {
+
+		/** 預設數值 */
+		private AsyncEncryptionUtil asyncUtil = new AsyncEncryptionUtil();
+
+		/** 實際執行加解密的工具，必須給定 */
+		public Builder setEncryptionUtil(EncryptionUtil2 encryptionUtil) {
+			asyncUtil.encryptionUtil = encryptionUtil;
+			return this;
+		}
+
+		/** 平台執行緒池的執行緒數，預設為CPU核心數 */
+		public Builder setThreads(int threads) {
+			asyncUtil.threads = threads;
+			return this;
+		}
+
+		/** 執行中之外，最多可等待的工作數，預設1024 */
+		public Builder setQueueCapacity(int queueCapacity) {
+			asyncUtil.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		/**
+		 * 改用虛擬執行緒，每個工作一個執行緒，適合與金鑰檔讀取等I/O混用；需Java 21以上<br>
+		 * 同時進行的工作數上限仍為執行緒數加上等待佇列大小
+		 */
+		public Builder setVirtualThreads(boolean virtualThreads) {
+			asyncUtil.virtualThreads = virtualThreads;
+			return this;
+		}
+
+		/** 使用外部的Executor，close時不會關閉它 */
+		public Builder setExecutor(Executor executor) {
+			asyncUtil.executor = executor;
+			return this;
+		}
+
+		public AsyncEncryptionUtil build() {
+
+			AsyncEncryptionUtil util = asyncUtil;
+			if (util.encryptionUtil == null)
+				throw new RuntimeException("Utility building failure. There is no EncryptionUtil2 setted.");
+			if (util.threads < 1 || util.queueCapacity < 0)
+				throw new RuntimeException("Utility building failure. Please check the executor settings.");
+			if (util.executor == null) {
+				util.ownedExecutor = util.virtualThreads ? newVirtualThreadExecutor() : newPlatformExecutor(util.threads);
+				util.executor = util.ownedExecutor;
+			}
+			util.permits = new Semaphore(util.threads + util.queueCapacity);
+			return util;
+		}
+	}
+
+	/**
+	 * 非同步加密字串，結果以Base64表示
+	 */
+	public CompletableFuture<String> encryptAsync(String originalString) {
+		return supplyAsync(() -> encryptionUtil.encryptInStringByPublicKey(originalString));
+	}
+
+	/**
+	 * 非同步加密byte陣列
+	 */
+	public CompletableFuture<byte[]> encryptAsync(byte[] originalBytes) {
+		return supplyAsync(() -> encryptionUtil.encryptInBytesByPublicKey(originalBytes));
+	}
+
+	/**
+	 * 非同步解密Base64的加密字串，結果為原始字串(UTF-8)
+	 */
+	public CompletableFuture<String> decryptAsync(String encryptedBase64String) {
+		return supplyAsync(() -> encryptionUtil.decryptInStringByPrivateKey(encryptedBase64String));
+	}
+
+	/**
+	 * 非同步解密byte陣列
+	 */
+	public CompletableFuture<byte[]> decryptAsync(byte[] encryptedBytes) {
+		return supplyAsync(() -> encryptionUtil.decryptByPrivateKey(encryptedBytes));
+	}
+
+	/**
+	 * 於同一個執行緒池與上限下執行任意工作，例如以{@link RSAKeyUtil}讀取金鑰檔
+	 *
+	 * @param task 工作內容
+	 * @return 工作結果，等待數已滿時以RejectedExecutionException失敗
+	 */
+	public <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+		if (!permits.tryAcquire()) {
+			rejected.increment();
+			return CompletableFuture.failedFuture(new RejectedExecutionException("Crypto queue is full."));
+		}
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				T value;
+				try {
+					value = task.get();
+				} catch (Throwable e) {
+					permits.release();
+					future.completeExceptionally(e);
+					return;
+				}
+				// 先釋放名額再完成，後續串接的工作不佔用名額
+				permits.release();
+				future.complete(value);
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			rejected.increment();
+			return CompletableFuture.failedFuture(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 目前執行中與等待中的工作數
+	 */
+	public int getInFlightCount() {
+		return threads + queueCapacity - permits.availablePermits();
+	}
+
+	/**
+	 * 因等待數已滿而拒絕的累計次數
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * 關閉此工具建立的執行緒池，已送出的工作仍會完成
+	 */
+	@Override
+	public void close() {
+		if (ownedExecutor != null)
+			ownedExecutor.shutdown();
+	}
+
+	private static ExecutorService newPlatformExecutor(int threads) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		// 佇列長度已由permits限制，此處不需再設上限
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "crypto-worker-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * 以反射建立虛擬執行緒的Executor，使編譯目標維持Java 11
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException("Utility building failure. Virtual threads require Java 21 or later.");
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package encryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 密文字串使用的Base64格式<p>
+ * MIME為原本的格式，每76字元插入CRLF，解碼時略過非Base64字元；其他格式不換行，密文字串較短，
+ * 解碼時遇到非Base64字元即拋出例外。各格式解碼時皆接受有無補位(=)的輸入。<br>
+ * 除產生字串的方法外，皆可編碼至呼叫端提供的byte陣列或ByteBuffer，或由其解碼，不配置新的陣列。
+ *
+ * @author EnixLin
+ *
+ */
+public enum Base64Flavor {
+
+	/** 每76字元換行(CRLF)，與舊版相容，預設值 */
+	MIME(false, true, true),
+	/** RFC 4648 標準字元，不換行 */
+	BASIC(false, true, false),
+	/** RFC 4648 URL與檔名安全字元(- _)，可直接放在URL或檔名中 */
+	URL_SAFE(true, true, false),
+	/** 標準字元，不換行、不補位 */
+	BASIC_UNPADDED(false, false, false),
+	/** URL安全字元，不換行、不補位 */
+	URL_SAFE_UNPADDED(true, false, false);
+
+	private static final int MIME_LINE_LENGTH = 76;
+
+	private final byte[] alphabet;
+	/** 字元對應的數值，-1為非Base64字元 */
+	private final byte[] values = new byte[128];
+	private final boolean padded;
+	private final boolean mime;
+
+	Base64Flavor(boolean urlSafe, boolean padded, boolean mime) {
+		this.alphabet = ("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789" + (urlSafe ? "-_" : "+/"))
+				.getBytes(StandardCharsets.US_ASCII);
+		this.padded = padded;
+		this.mime = mime;
+		Arrays.fill(values, (byte) -1);
+		for (int i = 0; i < alphabet.length; i++) {
+			values[alphabet[i]] = (byte) i;
+		}
+	}
+
+	/**
+	 * 編碼後的長度
+	 *
+	 * @param length 原始資料長度
+	 */
+	public int encodedLength(int length) {
+		int encodedLength = padded ? (length + 2) / 3 * 4 : (length * 4 + 2) / 3;
+		if (mime && encodedLength > 0)
+			encodedLength += (encodedLength - 1) / MIME_LINE_LENGTH * 2;
+		return encodedLength;
+	}
+
+	/**
+	 * 解碼後長度的上限，可用於預先配置輸出空間
+	 *
+	 * @param encodedLength 編碼後的長度
+	 */
+	public int maxDecodedLength(int encodedLength) {
+		return (int) ((long) encodedLength * 3 / 4);
+	}
+
+	/**
+	 * 將src的length個byte編碼後寫入dst
+	 *
+	 * @return 寫入dst的byte數
+	 */
+	public int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		if (dst.length - dstOffset < encodedLength(length))
+			throw new IllegalArgumentException("Output buffer is too small.");
+		int position = dstOffset;
+		int lineLength = 0;
+		int end = offset + length - length % 3;
+		for (int i = offset; i < end; i += 3) {
+			if (mime && lineLength == MIME_LINE_LENGTH) {
+				dst[position++] = '\r';
+				dst[position++] = '\n';
+				lineLength = 0;
+			}
+			int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+			dst[position++] = alphabet[bits >>> 18];
+			dst[position++] = alphabet[(bits >>> 12) & 0x3F];
+			dst[position++] = alphabet[(bits >>> 6) & 0x3F];
+			dst[position++] = alphabet[bits & 0x3F];
+			lineLength += 4;
+		}
+		int remaining = length % 3;
+		if (remaining > 0) {
+			if (mime && lineLength == MIME_LINE_LENGTH) {
+				dst[position++] = '\r';
+				dst[position++] = '\n';
+			}
+			int bits = (src[end] & 0xFF) << 16 | (remaining == 2 ? (src[end + 1] & 0xFF) << 8 : 0);
+			dst[position++] = alphabet[bits >>> 18];
+			dst[position++] = alphabet[(bits >>> 12) & 0x3F];
+			if (remaining == 2)
+				dst[position++] = alphabet[(bits >>> 6) & 0x3F];
+			else if (padded)
+				dst[position++] = '=';
+			if (padded)
+				dst[position++] = '=';
+		}
+		return position - dstOffset;
+	}
+
+	/**
+	 * 將src剩餘的內容編碼後寫入dst，兩者的position皆往後移動；可使用direct buffer，以絕對位置直接讀寫
+	 *
+	 * @return 寫入dst的byte數
+	 */
+	public int encode(ByteBuffer src, ByteBuffer dst) {
+		int length = src.remaining();
+		if (dst.remaining() < encodedLength(length))
+			throw new IllegalArgumentException("Output buffer is too small.");
+		if (src.hasArray() && dst.hasArray()) {
+			int written = encode(src.array(), src.arrayOffset() + src.position(), length, dst.array(),
+					dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + written);
+			return written;
+		}
+		return encodeInPlace(src, dst);
+	}
+
+	/**
+	 * 以絕對位置讀寫編碼，用於direct或唯讀的buffer，不經中轉陣列
+	 */
+	private int encodeInPlace(ByteBuffer src, ByteBuffer dst) {
+		int start = dst.position();
+		int position = start;
+		int lineLength = 0;
+		int length = src.remaining();
+		int end = src.position() + length - length % 3;
+		for (int i = src.position(); i < end; i += 3) {
+			if (mime && lineLength == MIME_LINE_LENGTH) {
+				dst.put(position++, (byte) '\r');
+				dst.put(position++, (byte) '\n');
+				lineLength = 0;
+			}
+			int bits = (src.get(i) & 0xFF) << 16 | (src.get(i + 1) & 0xFF) << 8 | (src.get(i + 2) & 0xFF);
+			dst.put(position++, alphabet[bits >>> 18]);
+			dst.put(position++, alphabet[(bits >>> 12) & 0x3F]);
+			dst.put(position++, alphabet[(bits >>> 6) & 0x3F]);
+			dst.put(position++, alphabet[bits & 0x3F]);
+			lineLength += 4;
+		}
+		int remaining = length % 3;
+		if (remaining > 0) {
+			if (mime && lineLength == MIME_LINE_LENGTH) {
+				dst.put(position++, (byte) '\r');
+				dst.put(position++, (byte) '\n');
+			}
+			int bits = (src.get(end) & 0xFF) << 16 | (remaining == 2 ? (src.get(end + 1) & 0xFF) << 8 : 0);
+			dst.put(position++, alphabet[bits >>> 18]);
+			dst.put(position++, alphabet[(bits >>> 12) & 0x3F]);
+			if (remaining == 2)
+				dst.put(position++, alphabet[(bits >>> 6) & 0x3F]);
+			else if (padded)
+				dst.put(position++, (byte) '=');
+			if (padded)
+				dst.put(position++, (byte) '=');
+		}
+		src.position(src.limit());
+		dst.position(position);
+		return position - start;
+	}
+
+	/**
+	 * 編碼為字串
+	 */
+	public String encodeToString(byte[] src) {
+		return encodeToString(src, 0, src.length);
+	}
+
+	/**
+	 * 將src的length個byte編碼為字串
+	 */
+	public String encodeToString(byte[] src, int offset, int length) {
+		byte[] encoded = new byte[encodedLength(length)];
+		encode(src, offset, length, encoded, 0);
+		return new String(encoded, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * 將src的length個字元解碼後寫入dst
+	 *
+	 * @return 寫入dst的byte數
+	 */
+	public int decode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		int position = dstOffset;
+		int bits = 0, count = 0;
+		boolean padding = false;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int c = src[i] & 0xFF;
+			int value = c < 128 ? values[c] : -1;
+			if (value < 0) {
+				padding |= checkSkipped(c, count);
+				continue;
+			}
+			if (padding)
+				throw new IllegalArgumentException("Base64 data after padding.");
+			bits = bits << 6 | value;
+			if (++count == 4) {
+				position = putUnit(dst, position, bits);
+				bits = 0;
+				count = 0;
+			}
+		}
+		return putLastUnit(dst, position, bits, count) - dstOffset;
+	}
+
+	/**
+	 * 直接由字串的字元解碼後寫入dst，不經過String.getBytes
+	 *
+	 * @return 寫入dst的byte數
+	 */
+	public int decode(CharSequence src, byte[] dst, int dstOffset) {
+		int position = dstOffset;
+		int bits = 0, count = 0;
+		boolean padding = false;
+		for (int i = 0, end = src.length(); i < end; i++) {
+			char c = src.charAt(i);
+			int value = c < 128 ? values[c] : -1;
+			if (value < 0) {
+				padding |= checkSkipped(c, count);
+				continue;
+			}
+			if (padding)
+				throw new IllegalArgumentException("Base64 data after padding.");
+			bits = bits << 6 | value;
+			if (++count == 4) {
+				position = putUnit(dst, position, bits);
+				bits = 0;
+				count = 0;
+			}
+		}
+		return putLastUnit(dst, position, bits, count) - dstOffset;
+	}
+
+	/**
+	 * 將src剩餘的內容解碼後寫入dst，兩者的position皆往後移動<br>
+	 * dst剩餘空間須至少為{@link #maxDecodedLength(int)}
+	 *
+	 * @return 寫入dst的byte數
+	 */
+	public int decode(ByteBuffer src, ByteBuffer dst) {
+		if (dst.remaining() < maxDecodedLength(src.remaining()))
+			throw new IllegalArgumentException("Output buffer is too small.");
+		if (src.hasArray() && dst.hasArray()) {
+			int written = decode(src.array(), src.arrayOffset() + src.position(), src.remaining(), dst.array(),
+					dst.arrayOffset() + dst.position());
+			src.position(src.limit());
+			dst.position(dst.position() + written);
+			return written;
+		}
+		return decodeInPlace(src, dst);
+	}
+
+	/**
+	 * 以絕對位置讀寫解碼，用於direct或唯讀的buffer，不經中轉陣列；
+	 * 呼叫前已確認dst的空間足夠，失敗時兩者的position皆不變
+	 */
+	private int decodeInPlace(ByteBuffer src, ByteBuffer dst) {
+		int start = dst.position();
+		int position = start;
+		int bits = 0, count = 0;
+		boolean padding = false;
+		for (int i = src.position(), end = src.limit(); i < end; i++) {
+			int c = src.get(i) & 0xFF;
+			int value = c < 128 ? values[c] : -1;
+			if (value < 0) {
+				padding |= checkSkipped(c, count);
+				continue;
+			}
+			if (padding)
+				throw new IllegalArgumentException("Base64 data after padding.");
+			bits = bits << 6 | value;
+			if (++count == 4) {
+				dst.put(position++, (byte) (bits >> 16));
+				dst.put(position++, (byte) (bits >> 8));
+				dst.put(position++, (byte) bits);
+				bits = 0;
+				count = 0;
+			}
+		}
+		if (count == 1)
+			throw new IllegalArgumentException("Last unit does not have enough valid bits.");
+		if (count == 2) {
+			dst.put(position++, (byte) (bits >> 4));
+		} else if (count == 3) {
+			dst.put(position++, (byte) (bits >> 10));
+			dst.put(position++, (byte) (bits >> 2));
+		}
+		src.position(src.limit());
+		dst.position(position);
+		return position - start;
+	}
+
+	/**
+	 * 解碼字串
+	 */
+	public byte[] decode(CharSequence src) {
+		int length = src.length();
+		int maxLength = maxDecodedLength(length);
+		// 不換行的格式只需扣除補位即為確切長度，不必再複製一次
+		if (!mime) {
+			for (int i = length - 1; i >= 0 && i >= length - 2 && src.charAt(i) == '='; i--) {
+				maxLength--;
+			}
+			maxLength = Math.max(maxLength, 0);
+		}
+		byte[] decoded = new byte[maxLength];
+		int decodedLength = decode(src, decoded, 0);
+		return decodedLength == decoded.length ? decoded : Arrays.copyOf(decoded, decodedLength);
+	}
+
+	/**
+	 * 處理非Base64字元：補位字元回傳true；MIME略過其他字元，其他格式拋出例外
+	 */
+	private boolean checkSkipped(int c, int count) {
+		if (c == '=') {
+			if (count < 2)
+				throw new IllegalArgumentException("Illegal base64 padding.");
+			return true;
+		}
+		if (!mime)
+			throw new IllegalArgumentException("Illegal base64 character " + Integer.toHexString(c) + ".");
+		return false;
+	}
+
+	private static int putUnit(byte[] dst, int position, int bits) {
+		if (dst.length - position < 3)
+			throw new IllegalArgumentException("Output buffer is too small.");
+		dst[position] = (byte) (bits >> 16);
+		dst[position + 1] = (byte) (bits >> 8);
+		dst[position + 2] = (byte) bits;
+		return position + 3;
+	}
+
+	/**
+	 * 寫出最後不足4個字元的部分
+	 */
+	private static int putLastUnit(byte[] dst, int position, int bits, int count) {
+		if (count == 1)
+			throw new IllegalArgumentException("Last unit does not have enough valid bits.");
+		if (count > 1 && dst.length - position < count - 1)
+			throw new IllegalArgumentException("Output buffer is too small.");
+		if (count == 2) {
+			dst[position++] = (byte) (bits >> 4);
+		} else if (count == 3) {
+			dst[position++] = (byte) (bits >> 10);
+			dst[position++] = (byte) (bits >> 2);
+		}
+		return position;
+	}
+}
@@ -0,0 +1,52 @@
+package encryption;
+
+/**
+ * 批次加解密中單筆資料的結果，成功時帶有結果值，失敗時帶有例外
+ *
+ * @author EnixLin
+ *
+ * @param <T> 結果類型
+ */
+public class BatchResult<T> {
+
+	private final int index;
+	private final T value;
+	private final RuntimeException error;
+
+	private BatchResult(int index, T value, RuntimeException error) {
+		this.index = index;
+		this.value = value;
+		this.error = error;
+	}
+
+	static <T> BatchResult<T> success(int index, T value) {
+		return new BatchResult<>(index, value, null);
+	}
+
+	static <T> BatchResult<T> failure(int index, RuntimeException error) {
+		return new BatchResult<>(index, null, error);
+	}
+
+	/** 此筆資料在輸入中的位置 */
+	public int getIndex() {
+		return index;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * 取得結果值，失敗時拋出當時的例外
+	 */
+	public T getValue() {
+		if (error != null)
+			throw error;
+		return value;
+	}
+
+	/** 失敗時的例外，成功時為null */
+	public RuntimeException getError() {
+		return error;
+	}
+}
@@ -0,0 +1,51 @@
+package encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 加密前的壓縮方式，以{@link EncryptionUtil.Builder#setCompressionCodec(CompressionCodec)}設定<p>
+ * 編號記錄於信封表頭的旗標中(受GCM保護)，解密時依編號自動解壓縮，因此解密端須認得相同的編號。
+ * 1為內建的{@link DeflateCodec}，解密時一律可用；自訂實作請使用2至15，並在解密端設定同一個實作。<br>
+ * 實作須可由多個執行緒同時使用。
+ *
+ * @author EnixLin
+ *
+ */
+public interface CompressionCodec {
+
+	/** 可使用的最大編號 */
+	int MAX_ID = 15;
+
+	/**
+	 * 寫入表頭的編號，1至{@link #MAX_ID}
+	 */
+	int getId();
+
+	/**
+	 * 壓縮data中由offset開始的length個byte
+	 *
+	 * @return 壓縮後的byte陣列
+	 */
+	byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+	/**
+	 * 解壓縮data中由offset開始的length個byte，資料不完整或格式錯誤時拋出例外
+	 *
+	 * @return 解壓縮後的byte陣列
+	 */
+	byte[] decompress(byte[] data, int offset, int length) throws IOException;
+
+	/**
+	 * 串流壓縮，由回傳的串流讀出in壓縮後的內容<br>
+	 * 關閉回傳的串流時釋放壓縮用的資源，但不關閉in
+	 */
+	InputStream compressing(InputStream in) throws IOException;
+
+	/**
+	 * 串流解壓縮，寫入回傳串流的壓縮資料解壓縮後寫至out<br>
+	 * 關閉回傳的串流時寫出剩餘資料並釋放資源，但不關閉out；壓縮資料不完整時拋出例外
+	 */
+	OutputStream decompressing(OutputStream out) throws IOException;
+}
@@ -0,0 +1,114 @@
+package encryption;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 將.jfr錄製檔中本套件的事件整理成各操作的延遲表<p>
+ * 使用方式：java encryption.CryptoEventAnalyzer recording.jfr<br>
+ * 錄製時可用 -XX:StartFlightRecording=filename=recording.jfr，
+ * 門檻可於 .jfc 或 -XX:StartFlightRecording 的設定調整，例如 encryption.CryptoOperation#threshold=0ms
+ *
+ * @author EnixLin
+ *
+ */
+public class CryptoEventAnalyzer {
+
+	private static final double BYTES_PER_MIB = 1024.0 * 1024.0;
+
+	private final Map<String, Row> rows = new TreeMap<>();
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: java encryption.CryptoEventAnalyzer <recording.jfr>...");
+			System.exit(1);
+		}
+		CryptoEventAnalyzer analyzer = new CryptoEventAnalyzer();
+		for (String arg : args) {
+			analyzer.read(Paths.get(arg));
+		}
+		analyzer.print(System.out);
+	}
+
+	/**
+	 * 讀取一個錄製檔，可多次呼叫合併多個檔案
+	 */
+	public void read(Path recording) {
+		try (RecordingFile file = new RecordingFile(recording)) {
+			while (file.hasMoreEvents()) {
+				RecordedEvent event = file.readEvent();
+				String name = event.getEventType().getName();
+				if (CryptoEvent.NAME.equals(name) || KeyEvent.NAME.equals(name))
+					add(event);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		}
+	}
+
+	private void add(RecordedEvent event) {
+		String source = event.hasField("utility") ? event.getString("utility") : "RSAKeyUtil";
+		String key = String.format("%-16s %-18s %6d %-7s", source, event.getString("operation"),
+				event.getInt("keySize"), event.getBoolean("success") ? "success" : "failure");
+		Row row = rows.computeIfAbsent(key, k -> new Row());
+		row.add(event.getDuration().toNanos(), event.hasField("inputSize") ? event.getLong("inputSize") : -1);
+	}
+
+	/**
+	 * 依 工具、操作、金鑰長度、結果 列出次數與延遲分布(毫秒)，
+	 * 有輸入大小時另列平均吞吐量(MiB/s)，只計入有記錄輸入大小的事件
+	 */
+	public void print(PrintStream out) {
+		out.println(String.format("%-16s %-18s %6s %-7s %8s %9s %9s %9s %9s %9s %9s", "Utility", "Operation",
+				"Key", "Result", "Count", "Mean", "p50", "p90", "p99", "Max", "MiB/s"));
+		for (Map.Entry<String, Row> entry : rows.entrySet()) {
+			Row row = entry.getValue();
+			long[] durations = row.sortedDurations();
+			out.println(String.format("%s %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9s", entry.getKey(), durations.length,
+					row.totalNanos / 1e6 / durations.length, percentile(durations, 50), percentile(durations, 90),
+					percentile(durations, 99), durations[durations.length - 1] / 1e6,
+					row.sizedBytes > 0 ? String.format("%.1f", row.sizedBytes / BYTES_PER_MIB / (row.sizedNanos / 1e9)) : "-"));
+		}
+		if (rows.isEmpty())
+			out.println("No encryption events found. Events shorter than the threshold are not recorded.");
+	}
+
+	private static double percentile(long[] sorted, int percentile) {
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+	private static final class Row {
+
+		private final List<Long> durations = new ArrayList<>();
+		private long totalNanos;
+		/** 有記錄輸入大小的事件，串流、檔案等大小未知的事件不計入吞吐量 */
+		private long sizedNanos;
+		private long sizedBytes;
+
+		void add(long nanos, long inputSize) {
+			durations.add(nanos);
+			totalNanos += nanos;
+			if (inputSize > 0) {
+				sizedNanos += nanos;
+				sizedBytes += inputSize;
+			}
+		}
+
+		long[] sortedDurations() {
+			long[] sorted = durations.stream().mapToLong(Long::longValue).toArray();
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package encryption;
+
+import java.lang.management.ManagementFactory;
+import java.security.Key;
+import java.security.interfaces.RSAKey;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 加解密與金鑰操作的計數與延遲統計<p>
+ * 以Builder的setMetrics交給{@link EncryptionUtil}、{@link EncryptionUtil2}、{@link RSAKeyUtil}後開始記錄，
+ * 多個工具可共用同一個實例。依 操作、金鑰長度、成功或失敗 分別統計，
+ * 可由{@link #snapshot()}取得數據，或以{@link #registerMBean(String)}於JMX公開。
+ *
+ * @author EnixLin
+ *
+ */
+public class CryptoMetrics implements CryptoMetricsMXBean {
+
+	/**
+	 * 記錄的操作種類
+	 */
+	public enum Operation {
+		/** RSA直接加密 */
+		ENCRYPT,
+		/** RSA直接解密 */
+		DECRYPT,
+		/** 信封模式加密，含平行模式 */
+		ENVELOPE_ENCRYPT,
+		/** 信封模式解密，含平行模式 */
+		ENVELOPE_DECRYPT,
+		/** 串流加密 */
+		STREAM_ENCRYPT,
+		/** 串流解密 */
+		STREAM_DECRYPT,
+		/** 檔案加密 */
+		FILE_ENCRYPT,
+		/** 檔案解密 */
+		FILE_DECRYPT,
+		/** 產生KeyPair */
+		KEY_GENERATE,
+		/** 由檔案讀取金鑰，快取命中時不記錄 */
+		KEY_LOAD,
+		/** 將KeyPair存檔 */
+		KEY_SAVE,
+		/** 數位簽章 */
+		SIGN,
+		/** 驗證簽章，驗證結果不符仍算成功，僅拋出例外時算失敗 */
+		VERIFY
+	}
+
+	private final Map<TimerKey, OperationTimer> timers = new ConcurrentHashMap<>();
+	private ObjectName objectName;
+
+	/**
+	 * 取得操作與金鑰長度對應的計時器，工具應在建立時先取得並保留，記錄時不必查表
+	 */
+	OperationTimer timer(Operation operation, int keySize) {
+		return timers.computeIfAbsent(new TimerKey(operation, keySize),
+				key -> new OperationTimer(operation, keySize));
+	}
+
+	/**
+	 * 記錄一次金鑰長度於呼叫時才知道的操作
+	 */
+	void record(Operation operation, int keySize, long startNanos, boolean success) {
+		timer(operation, keySize).record(startNanos, success);
+	}
+
+	/**
+	 * 取得金鑰長度，RSA取modulus的位元數，EC與XDH取曲線的位元數，其他演算法回傳fallback
+	 */
+	static int keySizeOf(Key key, int fallback) {
+		return key instanceof RSAKey ? ((RSAKey) key).getModulus().bitLength() : KeyAlgorithms.keySizeOf(key, fallback);
+	}
+
+	/**
+	 * 取得目前所有統計數據，依操作、金鑰長度排序，沒有資料的項目不列出
+	 */
+	public List<OperationStats> snapshot() {
+		List<OperationStats> stats = new ArrayList<>();
+		for (OperationTimer timer : timers.values()) {
+			OperationStats success = timer.snapshot(true);
+			OperationStats failure = timer.snapshot(false);
+			if (success.getCount() > 0)
+				stats.add(success);
+			if (failure.getCount() > 0)
+				stats.add(failure);
+		}
+		stats.sort(Comparator.comparing(OperationStats::getOperation).thenComparingInt(OperationStats::getKeySize)
+				.thenComparing(OperationStats::isSuccess, Comparator.reverseOrder()));
+		return stats;
+	}
+
+	@Override
+	public long getOperationCount() {
+		return snapshot().stream().mapToLong(OperationStats::getCount).sum();
+	}
+
+	@Override
+	public long getFailureCount() {
+		return snapshot().stream().filter(stats -> !stats.isSuccess()).mapToLong(OperationStats::getCount).sum();
+	}
+
+	@Override
+	public Map<String, Long> getCounts() {
+		return toMap(OperationStats::getCount);
+	}
+
+	@Override
+	public Map<String, Double> getMeanMillis() {
+		return toMap(OperationStats::getMeanMillis);
+	}
+
+	@Override
+	public Map<String, Double> getP99Millis() {
+		return toMap(stats -> stats.getPercentileMillis(99));
+	}
+
+	@Override
+	public void reset() {
+		timers.values().forEach(OperationTimer::reset);
+	}
+
+	/**
+	 * 註冊至平台的MBeanServer，ObjectName為 encryption:type=CryptoMetrics,name={name}
+	 *
+	 * @param name 區分多個實例的名稱
+	 */
+	public synchronized void registerMBean(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("encryption:type=CryptoMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (JMException e) {
+			throw new RuntimeException("MBean registration failure. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 由平台的MBeanServer移除，未註冊時不做任何事
+	 */
+	public synchronized void unregisterMBean() {
+		if (objectName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			objectName = null;
+		} catch (JMException e) {
+			throw new RuntimeException("MBean unregistration failure. " + e.getMessage());
+		}
+	}
+
+	private <V> Map<String, V> toMap(Function<OperationStats, V> value) {
+		Map<String, V> map = new LinkedHashMap<>();
+		for (OperationStats stats : snapshot()) {
+			map.put(stats.getName(), value.apply(stats));
+		}
+		return map;
+	}
+
+	private static final class TimerKey {
+
+		final Operation operation;
+		final int keySize;
+
+		TimerKey(Operation operation, int keySize) {
+			this.operation = operation;
+			this.keySize = keySize;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TimerKey))
+				return false;
+			TimerKey other = (TimerKey) obj;
+			return operation == other.operation && keySize == other.keySize;
+		}
+
+		@Override
+		public int hashCode() {
+			return operation.hashCode() * 31 + keySize;
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package encryption;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * 持有多把私鑰，依密文前的金鑰標籤直接選出對應私鑰解密的工具，適用於金鑰輪替<p>
+ * 密文須由開啟{@link EncryptionUtil.Builder#setKeyTagging(boolean)}的工具加密。
+ * 以指紋查表一次即可取得已初始化的Cipher，不論持有多少私鑰，解密成本皆相同；
+ * 每把私鑰各有一個Cipher池，多執行緒可同時使用同一個實例。<br>
+ * EC與XDH私鑰以金鑰交換解開信封模式的AES金鑰，此類密文只會是信封模式。
+ *
+ * @author EnixLin
+ *
+ */
+public class DecryptionRouter {
+
+	private String algorithm;
+	private int cipherPoolSize;
+	private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+	/** 信封模式解密內容用的AES/GCM Cipher */
+	private EnginePool<Cipher> contentCiphers;
+	/** 密文字串的Base64格式 */
+	private Base64Flavor base64Flavor;
+	/** 自訂的壓縮方式，內建的Deflate不需設定 */
+	private CompressionCodec compressionCodec;
+
+	/**
+	 * 預設值使用RSA，每把私鑰的Cipher池大小為CPU核心數
+	 */
+	private DecryptionRouter() {
+		this.algorithm = "RSA";
+		this.cipherPoolSize = Runtime.getRuntime().availableProcessors();
+		base64Flavor = Base64Flavor.MIME;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public Base64Flavor getBase64Flavor() {
+		return base64Flavor;
+	}
+
+	public static class Builder {
+
+		/** 預設數值 */
+		private DecryptionRouter router = new DecryptionRouter();
+		private final Map<Long, PrivateKey> privateKeys = new ConcurrentHashMap<>();
+
+		public Builder setAlgorithm(String algorithm) {
+			router.algorithm = algorithm;
+			return this;
+		}
+
+		/** 每把私鑰最多保留的Cipher數量，預設為CPU核心數 */
+		public Builder setCipherPoolSize(int cipherPoolSize) {
+			router.cipherPoolSize = cipherPoolSize;
+			return this;
+		}
+
+		/** 密文字串的Base64格式，預設為MIME(每76字元換行)，須與加密端相同 */
+		public Builder setBase64Flavor(Base64Flavor base64Flavor) {
+			router.base64Flavor = base64Flavor;
+			return this;
+		}
+
+		/** 信封模式加密端使用自訂的壓縮方式時設定相同的實作，內建的{@link DeflateCodec}不需設定 */
+		public Builder setCompressionCodec(CompressionCodec compressionCodec) {
+			CompressionStage.checkId(compressionCodec);
+			router.compressionCodec = compressionCodec;
+			return this;
+		}
+
+		/** 加入私鑰，指紋由私鑰算出 */
+		public Builder addPrivateKey(PrivateKey privateKey) {
+			privateKeys.put(KeyFingerprint.of(privateKey), privateKey);
+			return this;
+		}
+
+		/** 加入私鑰並指定指紋，用於無法由私鑰算出指紋的演算法 */
+		public Builder addPrivateKey(long fingerprint, PrivateKey privateKey) {
+			privateKeys.put(fingerprint, privateKey);
+			return this;
+		}
+
+		public DecryptionRouter build() {
+
+			if (router.cipherPoolSize < 1)
+				throw new RuntimeException("Router building failure. Cipher pool size must be positive.");
+			router.contentCiphers = new EnginePool<>(router.cipherPoolSize, Envelope::newContentCipher);
+			privateKeys.forEach(router::addPrivateKey);
+			return router;
+		}
+	}
+
+	/**
+	 * 加入或取代私鑰，可在使用中輪替
+	 *
+	 * @param fingerprint 對應公鑰的指紋，見{@link KeyFingerprint}
+	 * @param privateKey
+	 */
+	public void addPrivateKey(long fingerprint, PrivateKey privateKey) {
+		Route route = new Route(privateKey);
+		route.prefill();
+		routes.put(fingerprint, route);
+	}
+
+	/**
+	 * 移除私鑰，之後以此金鑰加密的資料將無法解密
+	 *
+	 * @return 是否有此私鑰
+	 */
+	public boolean removePrivateKey(long fingerprint) {
+		return routes.remove(fingerprint) != null;
+	}
+
+	public boolean containsKey(long fingerprint) {
+		return routes.containsKey(fingerprint);
+	}
+
+	/**
+	 * 目前持有的私鑰數量
+	 */
+	public int size() {
+		return routes.size();
+	}
+
+	/**
+	 * 讀出密文的金鑰指紋，不做解密
+	 *
+	 * @param encryptedBytes 附有金鑰標籤的密文
+	 * @return 指紋
+	 */
+	public static long fingerprintOf(byte[] encryptedBytes) {
+		if (!KeyTag.isTagged(encryptedBytes))
+			throw new RuntimeException("Ciphertext has no key tag.");
+		return KeyTag.fingerprint(encryptedBytes);
+	}
+
+	/**
+	 * 解密RSA直接加密或信封模式的密文，依標籤的類型自動判斷
+	 *
+	 * @param encryptedBytes 附有金鑰標籤的密文
+	 * @return 解密後的byte陣列
+	 */
+	public byte[] decrypt(byte[] encryptedBytes) {
+		if (!KeyTag.isTagged(encryptedBytes))
+			throw new RuntimeException("Decryption failure. Ciphertext has no key tag.");
+		long fingerprint = KeyTag.fingerprint(encryptedBytes);
+		Route route = routes.get(fingerprint);
+		if (route == null)
+			throw new RuntimeException(
+					"Decryption failure. There is no private key for " + KeyFingerprint.toHex(fingerprint) + ".");
+		try {
+			if (KeyTag.type(encryptedBytes) == KeyTag.TYPE_RSA)
+				return route.decrypt(encryptedBytes, KeyTag.LENGTH, encryptedBytes.length - KeyTag.LENGTH);
+			Envelope.Header header = Envelope.readHeader(encryptedBytes, KeyTag.LENGTH);
+			byte[] contentKey = route.unwrap(header.wrappedKey);
+			if (contentKey.length != Envelope.CONTENT_KEY_LENGTH)
+				throw new GeneralSecurityException("Invalid content key length.");
+			Cipher contentCipher = contentCiphers.borrow();
+			byte[] plainBytes = Envelope.open(contentCipher, contentKey, encryptedBytes, header);
+			contentCiphers.release(contentCipher);
+			return CompressionStage.decompress(header.flags, compressionCodec, plainBytes);
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 將加密過後的內容(Base64)解密為byte陣列
+	 *
+	 * @param encryptedBase64String base64的加密字串
+	 * @return 解密後的byte陣列
+	 */
+	public byte[] decrypt(String encryptedBase64String) {
+		return decrypt(base64Flavor.decode(encryptedBase64String));
+	}
+
+	/**
+	 * 將加密過後的陣列解密為新字串(UTF-8)
+	 *
+	 * @param encryptedBytes 附有金鑰標籤的密文
+	 * @return 解密後的字串
+	 */
+	public String decryptInString(byte[] encryptedBytes) {
+		return new String(decrypt(encryptedBytes), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 將加密過後的內容(Base64)轉為原始字串(UTF-8)
+	 *
+	 * @param encryptedBase64String base64的加密字串
+	 * @return 解密後的字串
+	 */
+	public String decryptInString(String encryptedBase64String) {
+		return new String(decrypt(encryptedBase64String), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 單一私鑰已初始化的Cipher池；EC與XDH私鑰則為金鑰包裝的池，只能解開信封模式的AES金鑰
+	 */
+	private final class Route {
+
+		/** RSA私鑰的Cipher池，EC與XDH私鑰時為null */
+		final EnginePool<Cipher> ciphers;
+		/** EC與XDH私鑰的金鑰包裝池，RSA私鑰時為null */
+		final EnginePool<EciesKeyWrap> keyWraps;
+
+		Route(PrivateKey privateKey) {
+			String keyAgreement = KeyAlgorithms.keyAgreementAlgorithm(privateKey);
+			if (keyAgreement == null) {
+				this.ciphers = new EnginePool<>(cipherPoolSize, () -> createCipher(privateKey));
+				this.keyWraps = null;
+			} else {
+				checkKeyAgreement(keyAgreement, privateKey);
+				this.ciphers = null;
+				// 解開時不產生臨時金鑰，不需要亂數
+				this.keyWraps = new EnginePool<>(cipherPoolSize,
+						() -> new EciesKeyWrap(keyAgreement, null, privateKey, SecureRandom::new));
+			}
+		}
+
+		/**
+		 * 先建立一個引擎放入池中，金鑰或演算法有誤時於此拋出例外
+		 */
+		void prefill() {
+			if (ciphers != null)
+				ciphers.prefill(1);
+			else
+				keyWraps.prefill(1);
+		}
+
+		byte[] decrypt(byte[] input, int offset, int length) throws GeneralSecurityException {
+			if (ciphers == null)
+				throw new GeneralSecurityException("Direct decryption requires an RSA key.");
+			Cipher cipher = ciphers.borrow();
+			byte[] output = cipher.doFinal(input, offset, length);
+			// 失敗的Cipher不歸還，下次借出時重新建立
+			ciphers.release(cipher);
+			return output;
+		}
+
+		/**
+		 * 解開信封模式包裝的AES金鑰
+		 */
+		byte[] unwrap(byte[] wrappedKey) throws GeneralSecurityException {
+			if (keyWraps == null)
+				return decrypt(wrappedKey, 0, wrappedKey.length);
+			EciesKeyWrap keyWrap = keyWraps.borrow();
+			byte[] contentKey = keyWrap.unwrap(wrappedKey);
+			keyWraps.release(keyWrap);
+			return contentKey;
+		}
+	}
+
+	private static void checkKeyAgreement(String keyAgreement, PrivateKey privateKey) {
+		try {
+			KeyAgreement.getInstance(keyAgreement).init(privateKey);
+		} catch (InvalidKeyException | NoSuchAlgorithmException e) {
+			throw new RuntimeException("Router building failure. " + e.getMessage());
+		}
+	}
+
+	private Cipher createCipher(PrivateKey privateKey) {
+		try {
+			Cipher cipher = Cipher.getInstance(algorithm);
+			cipher.init(Cipher.DECRYPT_MODE, privateKey);
+			return cipher;
+		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new RuntimeException("Router building failure. " + e.getMessage());
+		}
+	}
+}
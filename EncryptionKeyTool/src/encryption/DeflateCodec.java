@@ -0,0 +1,136 @@
+package encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * 以java.util.zip的Deflate壓縮，編號為{@link #ID}<p>
+ * 使用不含zlib表頭與Adler-32檢查碼的raw deflate，內容的完整性已由AES-GCM保證。
+ * byte陣列模式下每個執行緒重複使用各自的Deflater與Inflater，串流模式則每個串流各自建立。
+ *
+ * @author EnixLin
+ *
+ */
+public final class DeflateCodec implements CompressionCodec {
+
+	public static final int ID = 1;
+	/** 解密時使用，解壓縮與壓縮等級無關 */
+	static final DeflateCodec DEFAULT = new DeflateCodec();
+
+	private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+	private final int level;
+	private final ThreadLocal<Deflater> deflaters;
+	private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	/**
+	 * 預設使用最快的壓縮等級(1)，文字與JSON仍有不錯的壓縮率，且不致拖慢加密
+	 */
+	public DeflateCodec() {
+		this(Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * @param level 壓縮等級，0至9，或-1(Deflater.DEFAULT_COMPRESSION)
+	 */
+	public DeflateCodec(int level) {
+		if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+				&& level != Deflater.DEFAULT_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level " + level + ".");
+		this.level = level;
+		this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+	}
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public byte[] compress(byte[] data, int offset, int length) {
+		Deflater deflater = deflaters.get();
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		byte[] compressed = new byte[Math.max(64, length / 4)];
+		int position = 0;
+		while (!deflater.finished()) {
+			if (position == compressed.length)
+				compressed = Arrays.copyOf(compressed, grow(compressed.length));
+			position += deflater.deflate(compressed, position, compressed.length - position);
+		}
+		return Arrays.copyOf(compressed, position);
+	}
+
+	@Override
+	public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+		Inflater inflater = inflaters.get();
+		inflater.reset();
+		inflater.setInput(data, offset, length);
+		byte[] plain = new byte[Math.max(64, length * 4)];
+		int position = 0;
+		try {
+			while (!inflater.finished()) {
+				if (position == plain.length)
+					plain = Arrays.copyOf(plain, grow(plain.length));
+				int inflated = inflater.inflate(plain, position, plain.length - position);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new ZipException("Compressed data is truncated.");
+				position += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new ZipException("Invalid compressed data. " + e.getMessage());
+		}
+		return Arrays.copyOf(plain, position);
+	}
+
+	@Override
+	public InputStream compressing(InputStream in) {
+		return new DeflaterInputStream(in, new Deflater(level, true), STREAM_BUFFER_SIZE) {
+			@Override
+			public void close() {
+				def.end();
+			}
+		};
+	}
+
+	@Override
+	public OutputStream decompressing(OutputStream out) {
+		return new InflaterOutputStream(out, new Inflater(true), STREAM_BUFFER_SIZE) {
+
+			private boolean closed;
+
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				try {
+					finish();
+					if (!inf.finished())
+						throw new ZipException("Compressed data is truncated.");
+				} finally {
+					inf.end();
+				}
+			}
+		};
+	}
+
+	private static int grow(int length) {
+		if (length >= Integer.MAX_VALUE - 8)
+			throw new OutOfMemoryError("Data is too large for a byte array.");
+		return (int) Math.min(Integer.MAX_VALUE - 8, length * 2L);
+	}
+}
@@ -0,0 +1,159 @@
+package encryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.XECKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.function.Supplier;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 以橢圓曲線金鑰交換包裝信封的AES金鑰(ECIES)，取代RSA包裝<p>
+ * 每次包裝產生一組臨時金鑰，與對方公鑰做ECDH/XDH，共享秘密經HKDF-SHA256導出KEK，
+ * 再以AES Key Wrap(RFC 3394)包裝AES金鑰。格式為：<br>
+ * 臨時公鑰長度(1) | 臨時公鑰X.509編碼 | 包裝後的AES金鑰(40)<p>
+ * 非執行緒安全，與{@link EncryptionUtil}相同由單一執行緒使用；各引擎於首次使用時建立並重複使用。
+ *
+ * @author EnixLin
+ *
+ */
+final class EciesKeyWrap {
+
+	private static final byte[] HKDF_INFO = "encryption.Envelope ECIES key wrap".getBytes(StandardCharsets.US_ASCII);
+	private static final int KEK_LENGTH = 32;
+
+	private final String keyAlgorithm;
+	private final String agreementAlgorithm;
+	private final PublicKey publicKey;
+	private final PrivateKey privateKey;
+	/** 產生臨時金鑰用，由EncryptionUtil於首次使用時建立 */
+	private final Supplier<SecureRandom> random;
+
+	private KeyPairGenerator ephemeralGenerator;
+	private KeyFactory keyFactory;
+	private KeyAgreement keyAgreement;
+	private Mac hmac;
+	private Cipher wrapCipher;
+
+	/**
+	 * @param agreementAlgorithm ECDH或XDH
+	 * @param publicKey          包裝用，可為null
+	 * @param privateKey         解開用，可為null
+	 */
+	EciesKeyWrap(String agreementAlgorithm, PublicKey publicKey, PrivateKey privateKey, Supplier<SecureRandom> random) {
+		this.agreementAlgorithm = agreementAlgorithm;
+		this.keyAlgorithm = agreementAlgorithm.equals("ECDH") ? "EC" : "XDH";
+		this.publicKey = publicKey;
+		this.privateKey = privateKey;
+		this.random = random;
+	}
+
+	/**
+	 * 以對方公鑰包裝AES金鑰
+	 */
+	byte[] wrap(byte[] contentKey) throws GeneralSecurityException {
+		KeyPair ephemeral = getEphemeralGenerator().generateKeyPair();
+		byte[] ephemeralPublic = ephemeral.getPublic().getEncoded();
+		if (ephemeralPublic.length > 0xFF)
+			throw new GeneralSecurityException("Ephemeral public key is too long.");
+		Cipher cipher = getWrapCipher();
+		cipher.init(Cipher.WRAP_MODE, deriveKek(ephemeral.getPrivate(), publicKey, ephemeralPublic));
+		byte[] wrappedKey = cipher.wrap(new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM));
+		return ByteBuffer.allocate(1 + ephemeralPublic.length + wrappedKey.length).put((byte) ephemeralPublic.length)
+				.put(ephemeralPublic).put(wrappedKey).array();
+	}
+
+	/**
+	 * 以私鑰解開{@link #wrap(byte[])}包裝的AES金鑰，資料有誤或金鑰不符時拋出例外
+	 */
+	byte[] unwrap(byte[] wrapped) throws GeneralSecurityException {
+		if (wrapped.length < 1 || wrapped.length < 1 + (wrapped[0] & 0xFF))
+			throw new GeneralSecurityException("Wrapped key is truncated.");
+		int ephemeralLength = wrapped[0] & 0xFF;
+		byte[] ephemeralPublic = new byte[ephemeralLength];
+		System.arraycopy(wrapped, 1, ephemeralPublic, 0, ephemeralLength);
+		byte[] wrappedKey = new byte[wrapped.length - 1 - ephemeralLength];
+		System.arraycopy(wrapped, 1 + ephemeralLength, wrappedKey, 0, wrappedKey.length);
+
+		PublicKey ephemeralKey = getKeyFactory().generatePublic(new X509EncodedKeySpec(ephemeralPublic));
+		Cipher cipher = getWrapCipher();
+		cipher.init(Cipher.UNWRAP_MODE, deriveKek(privateKey, ephemeralKey, ephemeralPublic));
+		return cipher.unwrap(wrappedKey, Envelope.CONTENT_ALGORITHM, Cipher.SECRET_KEY).getEncoded();
+	}
+
+	/**
+	 * 金鑰交換後以HKDF-SHA256導出KEK，salt為臨時公鑰的編碼
+	 */
+	private SecretKeySpec deriveKek(PrivateKey ownKey, PublicKey otherKey, byte[] ephemeralPublic)
+			throws GeneralSecurityException {
+		KeyAgreement agreement = getKeyAgreement();
+		agreement.init(ownKey);
+		agreement.doPhase(otherKey, true);
+		byte[] sharedSecret = agreement.generateSecret();
+
+		Mac mac = getHmac();
+		mac.init(new SecretKeySpec(ephemeralPublic, "HmacSHA256"));
+		byte[] pseudoRandomKey = mac.doFinal(sharedSecret);
+		// 只需一個區塊：T(1) = HMAC(PRK, info | 0x01)
+		mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+		mac.update(HKDF_INFO);
+		mac.update((byte) 1);
+		byte[] okm = mac.doFinal();
+		return new SecretKeySpec(okm, 0, KEK_LENGTH, "AES");
+	}
+
+	private KeyPairGenerator getEphemeralGenerator() throws GeneralSecurityException {
+		if (ephemeralGenerator == null) {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+			generator.initialize(curveOf(publicKey), random.get());
+			ephemeralGenerator = generator;
+		}
+		return ephemeralGenerator;
+	}
+
+	private KeyFactory getKeyFactory() throws GeneralSecurityException {
+		if (keyFactory == null)
+			keyFactory = KeyFactory.getInstance(keyAlgorithm);
+		return keyFactory;
+	}
+
+	private KeyAgreement getKeyAgreement() throws GeneralSecurityException {
+		if (keyAgreement == null)
+			keyAgreement = KeyAgreement.getInstance(agreementAlgorithm);
+		return keyAgreement;
+	}
+
+	private Mac getHmac() throws GeneralSecurityException {
+		if (hmac == null)
+			hmac = Mac.getInstance("HmacSHA256");
+		return hmac;
+	}
+
+	private Cipher getWrapCipher() throws GeneralSecurityException {
+		if (wrapCipher == null)
+			wrapCipher = Cipher.getInstance("AESWrap");
+		return wrapCipher;
+	}
+
+	private static AlgorithmParameterSpec curveOf(Key key) throws GeneralSecurityException {
+		if (key instanceof ECKey)
+			return ((ECKey) key).getParams();
+		if (key instanceof XECKey)
+			return ((XECKey) key).getParams();
+		throw new GeneralSecurityException("Key agreement is not supported for " + key.getAlgorithm() + " keys.");
+	}
+}
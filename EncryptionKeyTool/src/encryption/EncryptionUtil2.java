@@ -1,22 +1,31 @@
 package encryption;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.util.Base64;
-import java.util.Base64.Decoder;
-import java.util.Base64.Encoder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 
 /**
  * 針對加解密操作的工具類別，需置入相應的key<p>
- * 此版將Cipher改用每次加解密都重新創建，防止多執行續出錯。
+ * 此版將Cipher改由有界池管理，每次加解密時借出一個已初始化的Cipher，用畢歸還，
+ * 多執行緒可同時使用同一個實例，且不必每次重新getInstance與init。
  * 
  * @author EnixLin
  *
@@ -27,9 +36,17 @@ public class EncryptionUtil2 {
 	private int keySize;
 	private PrivateKey privateKey;
 	private PublicKey publicKey;
-	private Cipher decryptionCipher, encryptionCipher;
-	private final Decoder decoder;
-	private final Encoder encoder;
+	private int cipherPoolSize;
+	private EnginePool<Cipher> decryptionCiphers, encryptionCiphers;
+	/** 密文字串的Base64格式 */
+	private Base64Flavor base64Flavor;
+	/** 統計數據，未設定時不記錄 */
+	private CryptoMetrics metrics;
+	private OperationTimer encryptTimer, decryptTimer;
+	private int actualKeySize;
+
+	/** 批次處理時，每次借出Cipher連續處理的筆數 */
+	private static final int BATCH_CHUNK_SIZE = 64;
 
 	/**
 	 * 預設值使用RSA，長度2048
@@ -37,8 +54,8 @@ public class EncryptionUtil2 {
 	private EncryptionUtil2() {
 		this.algorithm = "RSA";
 		this.keySize = 2048;
-		decoder = Base64.getMimeDecoder();
-		encoder = Base64.getMimeEncoder();
+		this.cipherPoolSize = Runtime.getRuntime().availableProcessors();
+		base64Flavor = Base64Flavor.MIME;
 	}
 
 	public String getAlgorithm() {
@@ -57,6 +74,18 @@ public class EncryptionUtil2 {
 		return publicKey;
 	}
 
+	public int getCipherPoolSize() {
+		return cipherPoolSize;
+	}
+
+	public CryptoMetrics getMetrics() {
+		return metrics;
+	}
+
+	public Base64Flavor getBase64Flavor() {
+		return base64Flavor;
+	}
+
 	public static class Builder {
 
 		/** 預設數值 */
@@ -84,39 +113,99 @@ public class EncryptionUtil2 {
 			return this;
 		}
 
+		/** 每個方向最多保留的Cipher數量，預設為CPU核心數 */
+		public Builder setCipherPoolSize(int cipherPoolSize) {
+			keyReaderUtil.cipherPoolSize = cipherPoolSize;
+			return this;
+		}
+
+		/** 記錄加解密的次數與延遲，預設不記錄 */
+		public Builder setMetrics(CryptoMetrics metrics) {
+			keyReaderUtil.metrics = metrics;
+			return this;
+		}
+
+		/** 密文字串的Base64格式，預設為MIME(每76字元換行)；加密端與解密端須使用相同的格式 */
+		public Builder setBase64Flavor(Base64Flavor base64Flavor) {
+			keyReaderUtil.base64Flavor = base64Flavor;
+			return this;
+		}
+
 		public EncryptionUtil2 build() {
 
-			try {
-				if (keyReaderUtil.privateKey != null) {
-					Cipher decryptionCipher = Cipher.getInstance(keyReaderUtil.algorithm);
-					decryptionCipher.init(Cipher.DECRYPT_MODE, keyReaderUtil.privateKey);
-					keyReaderUtil.decryptionCipher = decryptionCipher;
-				}
-				if (keyReaderUtil.publicKey != null) {
-					Cipher encryptionCipher = Cipher.getInstance(keyReaderUtil.algorithm);
-					encryptionCipher.init(Cipher.ENCRYPT_MODE, keyReaderUtil.publicKey);
-					keyReaderUtil.encryptionCipher = encryptionCipher;
-				}
-			} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
-				throw new RuntimeException("Utility building failure. " + e.getMessage());
+			EncryptionUtil2 util = keyReaderUtil;
+			if (util.cipherPoolSize < 1)
+				throw new RuntimeException("Utility building failure. Cipher pool size must be positive.");
+			// 先各建立一個Cipher放入池中，金鑰或演算法有誤時於此拋出例外
+			if (util.privateKey != null) {
+				util.decryptionCiphers = new EnginePool<>(util.cipherPoolSize,
+						() -> util.createCipher(Cipher.DECRYPT_MODE, util.privateKey));
+				util.decryptionCiphers.prefill(1);
+			}
+			if (util.publicKey != null) {
+				util.encryptionCiphers = new EnginePool<>(util.cipherPoolSize,
+						() -> util.createCipher(Cipher.ENCRYPT_MODE, util.publicKey));
+				util.encryptionCiphers.prefill(1);
 			}
+			util.actualKeySize = CryptoMetrics.keySizeOf(util.publicKey != null ? util.publicKey : util.privateKey,
+					util.keySize);
+			if (util.metrics != null) {
+				util.encryptTimer = util.metrics.timer(CryptoMetrics.Operation.ENCRYPT, util.actualKeySize);
+				util.decryptTimer = util.metrics.timer(CryptoMetrics.Operation.DECRYPT, util.actualKeySize);
+			}
+			return util;
+		}
+	}
+
+	private Cipher createCipher(int mode, Key key) {
+		try {
+			Cipher cipher = Cipher.getInstance(algorithm);
+			cipher.init(mode, key);
+			return cipher;
+		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new RuntimeException("Utility building failure. " + e.getMessage());
+		}
+	}
 
-			return keyReaderUtil;
+	/**
+	 * 借出加密用Cipher處理後歸還；失敗時不歸還，避免狀態不明的Cipher留在池中
+	 */
+	private byte[] doEncrypt(byte[] originalBytes) throws IllegalBlockSizeException, BadPaddingException {
+		CryptoEvent event = CryptoEvent.start(originalBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Cipher cipher = encryptionCiphers.borrow();
+			byte[] encryptedBytes = cipher.doFinal(originalBytes);
+			encryptionCiphers.release(cipher);
+			event.outputSize = encryptedBytes.length;
+			success = true;
+			return encryptedBytes;
+		} finally {
+			record(event, CryptoMetrics.Operation.ENCRYPT, start, success);
 		}
 	}
-	
-	private Cipher getEncryptionCipher() {
-		
-		Cipher encryptionCipher;
+
+	/**
+	 * 借出解密用Cipher處理後歸還；失敗時不歸還，避免狀態不明的Cipher留在池中
+	 */
+	private byte[] doDecrypt(byte[] encryptedBytes) throws IllegalBlockSizeException, BadPaddingException {
+		CryptoEvent event = CryptoEvent.start(encryptedBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
 		try {
-			encryptionCipher = Cipher.getInstance(algorithm);
-			encryptionCipher.init(Cipher.ENCRYPT_MODE, publicKey);
-		} catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException e) {
-			throw new RuntimeException("Fail to get encryption cipher object.");
+			Cipher cipher = decryptionCiphers.borrow();
+			byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+			decryptionCiphers.release(cipher);
+			event.outputSize = decryptedBytes.length;
+			success = true;
+			return decryptedBytes;
+		} finally {
+			record(event, CryptoMetrics.Operation.DECRYPT, start, success);
 		}
-		return encryptionCipher;
 	}
-	
+
+
 	/**
 	 * 將原始字串取得UTF8之byte陣列，以公鑰匙加密
 	 * 
@@ -130,7 +219,7 @@ public class EncryptionUtil2 {
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
 			byte[] utf8Bytes = originalString.getBytes("UTF-8");
-			return encryptionCipher.doFinal(utf8Bytes);
+			return doEncrypt(utf8Bytes);
 		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
@@ -148,7 +237,7 @@ public class EncryptionUtil2 {
 		if (publicKey == null)
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
-			return encryptionCipher.doFinal(originalBytes);
+			return doEncrypt(originalBytes);
 		} catch (IllegalBlockSizeException | BadPaddingException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
@@ -165,7 +254,7 @@ public class EncryptionUtil2 {
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
 			byte[] utf8Bytes = originalString.getBytes("UTF-8");
-			return encoder.encodeToString(encryptionCipher.doFinal(utf8Bytes));
+			return base64Flavor.encodeToString(doEncrypt(utf8Bytes));
 		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
@@ -181,7 +270,7 @@ public class EncryptionUtil2 {
 		if (publicKey == null)
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
-			return encoder.encodeToString(encryptionCipher.doFinal(originalBytes));
+			return base64Flavor.encodeToString(doEncrypt(originalBytes));
 		} catch (IllegalBlockSizeException | BadPaddingException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
@@ -197,7 +286,7 @@ public class EncryptionUtil2 {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return decryptionCipher.doFinal(encryptedBytes);
+			return doDecrypt(encryptedBytes);
 		} catch (IllegalBlockSizeException | BadPaddingException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
@@ -213,7 +302,7 @@ public class EncryptionUtil2 {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return decryptionCipher.doFinal(decoder.decode(encryptedBase64String));
+			return doDecrypt(base64Flavor.decode(encryptedBase64String));
 		} catch (IllegalBlockSizeException | BadPaddingException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
@@ -229,7 +318,7 @@ public class EncryptionUtil2 {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return new String(decryptionCipher.doFinal(encryptedBytes), "UTF-8");
+			return new String(doDecrypt(encryptedBytes), "UTF-8");
 		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
@@ -245,9 +334,323 @@ public class EncryptionUtil2 {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return new String(decryptionCipher.doFinal(decoder.decode(encryptedBase64String)), "UTF-8");
+			return new String(doDecrypt(base64Flavor.decode(encryptedBase64String)), "UTF-8");
 		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
 	}
+
+	/**
+	 * 將input剩餘的內容以公鑰加密後寫入output，不配置新的陣列<p>
+	 * 可使用direct buffer，output剩餘空間須至少為{@link #getOutputSize(int)}
+	 * 
+	 * @param input  欲加密的內容，處理後position移至limit
+	 * @param output 加密結果寫入處，處理後position往後移動
+	 * @return 寫入output的byte數
+	 */
+	public int encryptByPublicKey(ByteBuffer input, ByteBuffer output) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(input.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Cipher cipher = encryptionCiphers.borrow();
+			int length = cipher.doFinal(input, output);
+			encryptionCiphers.release(cipher);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 將input剩餘的內容以私鑰解密後寫入output，不配置新的陣列<p>
+	 * 可使用direct buffer，output剩餘空間須至少為{@link #getOutputSize(int)}
+	 * 
+	 * @param input  欲解密的內容，處理後position移至limit
+	 * @param output 解密結果寫入處，處理後position往後移動
+	 * @return 寫入output的byte數
+	 */
+	public int decryptByPrivateKey(ByteBuffer input, ByteBuffer output) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(input.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Cipher cipher = decryptionCiphers.borrow();
+			int length = cipher.doFinal(input, output);
+			decryptionCiphers.release(cipher);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 取得加解密結果所需的最大長度，可用於預先配置重複使用的ByteBuffer
+	 * 
+	 * @param inputLength 輸入長度
+	 * @return 輸出所需的byte數
+	 */
+	public int getOutputSize(int inputLength) {
+		EnginePool<Cipher> ciphers = encryptionCiphers != null ? encryptionCiphers : decryptionCiphers;
+		if (ciphers == null)
+			throw new RuntimeException("There is no key setted in this utility instance.");
+		Cipher cipher = ciphers.borrow();
+		int outputSize = cipher.getOutputSize(inputLength);
+		ciphers.release(cipher);
+		return outputSize;
+	}
+
+	/**
+	 * 批次以公鑰加密多個字串(UTF-8)，結果以Base64字串表示並依輸入順序排列<p>
+	 * 單筆失敗不影響其他資料，失敗原因記錄於對應的{@link BatchResult}
+	 * 
+	 * @param originalStrings 欲加密之字串
+	 * @param parallel        是否平行處理
+	 * @return 與輸入順序相同的結果
+	 */
+	public List<BatchResult<String>> encryptAll(List<String> originalStrings, boolean parallel) {
+		checkPublicKey();
+		return runBatch(originalStrings.size(), encryptionCiphers, CryptoMetrics.Operation.ENCRYPT, parallel, "Encryption failure. ",
+				(cipher, i, scratch) -> scratch.encryptToString(cipher, originalStrings.get(i)));
+	}
+
+	/**
+	 * 批次以公鑰加密多個byte陣列，結果依輸入順序排列
+	 * 
+	 * @param originalBytes 欲加密之byte陣列
+	 * @param parallel      是否平行處理
+	 * @return 與輸入順序相同的結果
+	 */
+	public List<BatchResult<byte[]>> encryptAll(byte[][] originalBytes, boolean parallel) {
+		checkPublicKey();
+		return runBatch(originalBytes.length, encryptionCiphers, CryptoMetrics.Operation.ENCRYPT, parallel, "Encryption failure. ",
+				(cipher, i, scratch) -> scratch.sized(originalBytes[i].length, cipher.doFinal(originalBytes[i])));
+	}
+
+	/**
+	 * 批次以公鑰加密，inputs[i]的剩餘內容加密後寫入outputs[i]，不配置結果陣列
+	 * 
+	 * @param inputs   欲加密的內容
+	 * @param outputs  加密結果寫入處，數量須與inputs相同
+	 * @param parallel 是否平行處理
+	 * @return 每筆寫入的byte數，與輸入順序相同
+	 */
+	public List<BatchResult<Integer>> encryptAll(ByteBuffer[] inputs, ByteBuffer[] outputs, boolean parallel) {
+		checkPublicKey();
+		if (inputs.length != outputs.length)
+			throw new IllegalArgumentException("The number of inputs and outputs must be the same.");
+		return runBatch(inputs.length, encryptionCiphers, CryptoMetrics.Operation.ENCRYPT, parallel, "Encryption failure. ",
+				(cipher, i, scratch) -> scratch.process(cipher, inputs[i], outputs[i]));
+	}
+
+	/**
+	 * 批次將加密過後的內容(Base64)解密為原始字串(UTF-8)，結果依輸入順序排列
+	 * 
+	 * @param encryptedBase64Strings base64的加密字串
+	 * @param parallel               是否平行處理
+	 * @return 與輸入順序相同的結果
+	 */
+	public List<BatchResult<String>> decryptAll(List<String> encryptedBase64Strings, boolean parallel) {
+		checkPrivateKey();
+		return runBatch(encryptedBase64Strings.size(), decryptionCiphers, CryptoMetrics.Operation.DECRYPT, parallel, "Decryption failure. ",
+				(cipher, i, scratch) -> scratch.decryptToString(cipher, encryptedBase64Strings.get(i)));
+	}
+
+	/**
+	 * 批次將加密過後的陣列解密，結果依輸入順序排列
+	 * 
+	 * @param encryptedBytes 加密過後的byte陣列
+	 * @param parallel       是否平行處理
+	 * @return 與輸入順序相同的結果
+	 */
+	public List<BatchResult<byte[]>> decryptAll(byte[][] encryptedBytes, boolean parallel) {
+		checkPrivateKey();
+		return runBatch(encryptedBytes.length, decryptionCiphers, CryptoMetrics.Operation.DECRYPT, parallel, "Decryption failure. ",
+				(cipher, i, scratch) -> scratch.sized(encryptedBytes[i].length, cipher.doFinal(encryptedBytes[i])));
+	}
+
+	/**
+	 * 批次解密，inputs[i]的剩餘內容解密後寫入outputs[i]，不配置結果陣列
+	 * 
+	 * @param inputs   欲解密的內容
+	 * @param outputs  解密結果寫入處，數量須與inputs相同
+	 * @param parallel 是否平行處理
+	 * @return 每筆寫入的byte數，與輸入順序相同
+	 */
+	public List<BatchResult<Integer>> decryptAll(ByteBuffer[] inputs, ByteBuffer[] outputs, boolean parallel) {
+		checkPrivateKey();
+		if (inputs.length != outputs.length)
+			throw new IllegalArgumentException("The number of inputs and outputs must be the same.");
+		return runBatch(inputs.length, decryptionCiphers, CryptoMetrics.Operation.DECRYPT, parallel, "Decryption failure. ",
+				(cipher, i, scratch) -> scratch.process(cipher, inputs[i], outputs[i]));
+	}
+
+	private void checkPublicKey() {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+	}
+
+	private void checkPrivateKey() {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+	}
+
+	/**
+	 * 將批次切成固定大小的區塊，每個區塊只借出一次Cipher處理其中所有資料，
+	 * 並重複使用同一組暫存區；結果依索引放回陣列，因此平行處理時順序仍與輸入相同
+	 */
+	private <T> List<BatchResult<T>> runBatch(int size, EnginePool<Cipher> ciphers, CryptoMetrics.Operation operation,
+			boolean parallel, String failureMessage, BatchItem<T> item) {
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		BatchResult<T>[] results = new BatchResult[size];
+		int chunkCount = (size + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+		IntStream chunks = IntStream.range(0, chunkCount);
+		(parallel ? chunks.parallel() : chunks).forEach(chunk -> {
+			int from = chunk * BATCH_CHUNK_SIZE;
+			int to = Math.min(size, from + BATCH_CHUNK_SIZE);
+			Cipher cipher = ciphers.borrow();
+			BatchScratch scratch = new BatchScratch();
+			for (int i = from; i < to; i++) {
+				CryptoEvent event = CryptoEvent.start(-1);
+				long start = System.nanoTime();
+				scratch.inputLength = -1;
+				scratch.outputLength = -1;
+				try {
+					results[i] = BatchResult.success(i, item.apply(cipher, i, scratch));
+				} catch (GeneralSecurityException e) {
+					results[i] = BatchResult.failure(i, new RuntimeException(failureMessage + e.getMessage()));
+					// 失敗後的Cipher狀態不明，改用新的
+					cipher = ciphers.borrow();
+				} catch (RuntimeException e) {
+					// 例如唯讀的輸出ByteBuffer，同樣可能停在doFinal中途
+					results[i] = BatchResult.failure(i, e);
+					cipher = ciphers.borrow();
+				}
+				event.inputSize = scratch.inputLength;
+				event.outputSize = scratch.outputLength;
+				record(event, operation, start, results[i].isSuccess());
+			}
+			ciphers.release(cipher);
+		});
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * 有設定統計時記錄一次操作，並結束JFR事件
+	 */
+	private void record(CryptoEvent event, CryptoMetrics.Operation operation, long start, boolean success) {
+		OperationTimer timer = operation == CryptoMetrics.Operation.ENCRYPT ? encryptTimer : decryptTimer;
+		if (timer != null)
+			timer.record(start, success);
+		event.finish("EncryptionUtil2", operation, actualKeySize, success);
+	}
+
+	/**
+	 * 以借出的Cipher處理第i筆資料，並將輸入與輸出的大小記錄於scratch
+	 */
+	private interface BatchItem<T> {
+		T apply(Cipher cipher, int i, BatchScratch scratch) throws GeneralSecurityException;
+	}
+
+	/**
+	 * 單一區塊重複使用的暫存區，字串批次只配置結果的String；不可跨執行緒共用
+	 */
+	private final class BatchScratch {
+
+		private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private char[] chars = new char[0];
+		private CharBuffer charView = CharBuffer.wrap(chars);
+		private byte[] input = new byte[0];
+		private ByteBuffer inputView = ByteBuffer.wrap(input);
+		private byte[] output = new byte[0];
+		private byte[] text = new byte[0];
+		/** 本筆的輸入與輸出大小，未知時為-1 */
+		long inputLength, outputLength;
+
+		/**
+		 * 字串以UTF-8編碼後加密，結果以Base64字串表示
+		 */
+		String encryptToString(Cipher cipher, String originalString) throws GeneralSecurityException {
+			int length = encodeUtf8(originalString);
+			output = ensureCapacity(output, cipher.getOutputSize(length));
+			int sealedLength = cipher.doFinal(input, 0, length, output, 0);
+			text = ensureCapacity(text, base64Flavor.encodedLength(sealedLength));
+			int textLength = base64Flavor.encode(output, 0, sealedLength, text, 0);
+			inputLength = length;
+			outputLength = sealedLength;
+			return new String(text, 0, textLength, StandardCharsets.ISO_8859_1);
+		}
+
+		/**
+		 * Base64字串直接解碼至暫存區後解密為UTF-8字串
+		 */
+		String decryptToString(Cipher cipher, String encryptedBase64String) throws GeneralSecurityException {
+			input = ensureCapacity(input, base64Flavor.maxDecodedLength(encryptedBase64String.length()));
+			int length = base64Flavor.decode(encryptedBase64String, input, 0);
+			output = ensureCapacity(output, cipher.getOutputSize(length));
+			int plainLength = cipher.doFinal(input, 0, length, output, 0);
+			inputLength = length;
+			outputLength = plainLength;
+			return new String(output, 0, plainLength, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * 處理input剩餘的內容並寫入output
+		 */
+		Integer process(Cipher cipher, ByteBuffer input, ByteBuffer output) throws GeneralSecurityException {
+			inputLength = input.remaining();
+			int length = cipher.doFinal(input, output);
+			outputLength = length;
+			return length;
+		}
+
+		byte[] sized(int inputLength, byte[] result) {
+			this.inputLength = inputLength;
+			this.outputLength = result.length;
+			return result;
+		}
+
+		/**
+		 * 以可重複使用的CharsetEncoder編碼至input，無法編碼的字元與String.getBytes相同以?取代
+		 *
+		 * @return 編碼後的byte數
+		 */
+		private int encodeUtf8(String string) {
+			int length = string.length();
+			if (chars.length < length) {
+				chars = new char[length];
+				charView = CharBuffer.wrap(chars);
+			}
+			string.getChars(0, length, chars, 0);
+			charView.clear().limit(length);
+			int capacity = (int) Math.ceil(length * (double) utf8.maxBytesPerChar());
+			if (input.length < capacity) {
+				input = new byte[capacity];
+				inputView = ByteBuffer.wrap(input);
+			}
+			inputView.clear();
+			utf8.reset();
+			utf8.encode(charView, inputView, true);
+			utf8.flush(inputView);
+			return inputView.position();
+		}
+	}
+
+	private static byte[] ensureCapacity(byte[] scratch, int capacity) {
+		return scratch.length >= capacity ? scratch : new byte[capacity];
+	}
 }
@@ -0,0 +1,69 @@
+package encryption;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * 已初始化引擎物件(Cipher、Signature等)的有界池，供多執行緒共用<p>
+ * 借出時若池中已空則直接建立新物件，不會阻塞；歸還時若池已滿則直接丟棄，
+ * 因此池中最多保留 size 個物件。
+ *
+ * @author EnixLin
+ *
+ * @param <T> 引擎類型
+ */
+class EnginePool<T> {
+
+	private final BlockingQueue<T> idle;
+	private final Supplier<T> factory;
+
+	/**
+	 * @param size    池中最多保留的物件數量
+	 * @param factory 建立並初始化新物件的方法
+	 */
+	EnginePool(int size, Supplier<T> factory) {
+		if (size < 1)
+			throw new IllegalArgumentException("Pool size must be positive.");
+		this.idle = new ArrayBlockingQueue<>(size);
+		this.factory = factory;
+	}
+
+	/**
+	 * 預先建立物件放入池中，建立失敗時會在此拋出例外
+	 *
+	 * @param count 預先建立的數量
+	 */
+	void prefill(int count) {
+		for (int i = 0; i < count; i++) {
+			if (!idle.offer(factory.get()))
+				return;
+		}
+	}
+
+	/**
+	 * 借出物件，用完須以{@link #release(Object)}歸還
+	 *
+	 * @return 已初始化的物件
+	 */
+	T borrow() {
+		T engine = idle.poll();
+		return engine != null ? engine : factory.get();
+	}
+
+	/**
+	 * 歸還物件，呼叫端須確保物件已回到初始化後的狀態
+	 *
+	 * @param engine
+	 */
+	void release(T engine) {
+		idle.offer(engine);
+	}
+
+	/**
+	 * @return 目前池中閒置的物件數量
+	 */
+	int idleCount() {
+		return idle.size();
+	}
+}
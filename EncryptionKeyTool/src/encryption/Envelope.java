@@ -0,0 +1,175 @@
+package encryption;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 信封加密(RSA + AES-GCM)的格式定義<p>
+ * 以隨機產生的AES金鑰加密內容，再以非對稱金鑰包裝此AES金鑰，格式如下：
+ *
+ * <pre>
+ * magic(2) | version(1) | flags(1) | 包裝後金鑰長度(2) | 包裝後金鑰 | IV(12) | 密文 + GCM tag(16)
+ * </pre>
+ *
+ * magic 至包裝後金鑰為表頭，同時作為GCM的AAD，表頭被竄改時解密即失敗。
+ * flags的低4位元為加密前的壓縮編號({@link CompressionCodec})，0為未壓縮。
+ *
+ * @author EnixLin
+ *
+ */
+final class Envelope {
+
+	static final byte MAGIC_0 = 'E';
+	static final byte MAGIC_1 = 'U';
+	/** 單次加密的信封格式 */
+	static final byte VERSION_SINGLE = 1;
+
+	static final String CONTENT_ALGORITHM = "AES";
+	static final String CONTENT_TRANSFORMATION = "AES/GCM/NoPadding";
+	static final int CONTENT_KEY_LENGTH = 32;
+	static final int IV_LENGTH = 12;
+	static final int TAG_LENGTH = 16;
+
+	private Envelope() {
+	}
+
+	static Cipher newContentCipher() {
+		try {
+			return Cipher.getInstance(CONTENT_TRANSFORMATION);
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Utility building failure. " + e.getMessage());
+		}
+	}
+
+	static byte[] newContentKey(SecureRandom random) {
+		byte[] contentKey = new byte[CONTENT_KEY_LENGTH];
+		random.nextBytes(contentKey);
+		return contentKey;
+	}
+
+	/**
+	 * 判斷是否為信封格式的資料
+	 */
+	static boolean isEnvelope(byte[] data) {
+		return isEnvelope(data, 0);
+	}
+
+	static boolean isEnvelope(byte[] data, int offset) {
+		return data.length > offset + 6 && data[offset] == MAGIC_0 && data[offset + 1] == MAGIC_1
+				&& data[offset + 2] == VERSION_SINGLE;
+	}
+
+	/**
+	 * 以AES-GCM加密內容並組成完整信封
+	 *
+	 * @param contentCipher AES/GCM的Cipher，會被重新init
+	 * @param random
+	 * @param contentKey    AES金鑰
+	 * @param wrappedKey    已包裝的AES金鑰
+	 * @param flags         表頭旗標
+	 * @param plainBytes    明文
+	 * @return 信封格式的byte陣列
+	 */
+	static byte[] seal(Cipher contentCipher, SecureRandom random, byte[] contentKey, byte[] wrappedKey, int flags,
+			byte[] plainBytes) throws GeneralSecurityException {
+		return seal(contentCipher, random, contentKey, wrappedKey, flags, plainBytes, 0);
+	}
+
+	/**
+	 * 同{@link #seal(Cipher, SecureRandom, byte[], byte[], int, byte[])}，但在信封前保留空間，
+	 * 供呼叫端寫入{@link KeyTag}等前置資料而不必再複製一次
+	 *
+	 * @param prefixLength 信封前保留的byte數
+	 */
+	static byte[] seal(Cipher contentCipher, SecureRandom random, byte[] contentKey, byte[] wrappedKey, int flags,
+			byte[] plainBytes, int prefixLength) throws GeneralSecurityException {
+
+		if (wrappedKey.length > 0xFFFF)
+			throw new IllegalArgumentException("Wrapped key is too long.");
+		int headerEnd = prefixLength + 6 + wrappedKey.length;
+		byte[] iv = new byte[IV_LENGTH];
+		random.nextBytes(iv);
+
+		contentCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(contentKey, CONTENT_ALGORITHM),
+				new GCMParameterSpec(TAG_LENGTH * 8, iv));
+		byte[] sealed = new byte[headerEnd + IV_LENGTH + contentCipher.getOutputSize(plainBytes.length)];
+		ByteBuffer buffer = ByteBuffer.wrap(sealed, prefixLength, headerEnd - prefixLength + IV_LENGTH);
+		buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION_SINGLE).put((byte) flags);
+		buffer.putShort((short) wrappedKey.length).put(wrappedKey);
+		buffer.put(iv);
+
+		contentCipher.updateAAD(sealed, prefixLength, headerEnd - prefixLength);
+		int length = contentCipher.doFinal(plainBytes, 0, plainBytes.length, sealed, headerEnd + IV_LENGTH);
+		return length == sealed.length - headerEnd - IV_LENGTH ? sealed
+				: Arrays.copyOf(sealed, headerEnd + IV_LENGTH + length);
+	}
+
+	/**
+	 * 解析信封表頭
+	 *
+	 * @param sealed 信封格式的byte陣列
+	 * @return 表頭資訊
+	 */
+	static Header readHeader(byte[] sealed) {
+		return readHeader(sealed, 0);
+	}
+
+	/**
+	 * 解析由offset開始的信封表頭
+	 *
+	 * @param sealed 含信封的byte陣列
+	 * @param offset 信封起始位置
+	 * @return 表頭資訊
+	 */
+	static Header readHeader(byte[] sealed, int offset) {
+		if (!isEnvelope(sealed, offset))
+			throw new IllegalArgumentException("Not an envelope.");
+		int wrappedKeyLength = ((sealed[offset + 4] & 0xFF) << 8) | (sealed[offset + 5] & 0xFF);
+		int headerEnd = offset + 6 + wrappedKeyLength;
+		if (sealed.length < headerEnd + IV_LENGTH + TAG_LENGTH)
+			throw new IllegalArgumentException("Envelope is truncated.");
+		return new Header(sealed[offset + 3], Arrays.copyOfRange(sealed, offset + 6, headerEnd), offset, headerEnd);
+	}
+
+	/**
+	 * 以已解開的AES金鑰解密信封內容
+	 *
+	 * @param contentCipher AES/GCM的Cipher，會被重新init
+	 * @param contentKey    AES金鑰
+	 * @param sealed        信封格式的byte陣列
+	 * @param header        {@link #readHeader(byte[])}的結果
+	 * @return 明文
+	 */
+	static byte[] open(Cipher contentCipher, byte[] contentKey, byte[] sealed, Header header)
+			throws GeneralSecurityException {
+
+		contentCipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(contentKey, CONTENT_ALGORITHM),
+				new GCMParameterSpec(TAG_LENGTH * 8, sealed, header.length, IV_LENGTH));
+		contentCipher.updateAAD(sealed, header.start, header.length - header.start);
+		int bodyOffset = header.length + IV_LENGTH;
+		return contentCipher.doFinal(sealed, bodyOffset, sealed.length - bodyOffset);
+	}
+
+	static final class Header {
+
+		final int flags;
+		final byte[] wrappedKey;
+		/** 信封的起始位置 */
+		final int start;
+		/** 表頭結束處，即IV的起始位置 */
+		final int length;
+
+		Header(int flags, byte[] wrappedKey, int start, int length) {
+			this.flags = flags & 0xFF;
+			this.wrappedKey = wrappedKey;
+			this.start = start;
+			this.length = length;
+		}
+	}
+}
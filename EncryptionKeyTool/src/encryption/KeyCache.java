@@ -0,0 +1,191 @@
+package encryption;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 已解析金鑰的快取，以正規化後的路徑與讀取方式為鍵<p>
+ * 每次查詢時比對檔案的最後修改時間與大小，檔案有變動即重新讀取；
+ * 超過數量上限時淘汰最久未使用的項目，另可設定存活時間。<br>
+ * 多個執行緒同時讀取同一個未快取的檔案時只解析一次，其他執行緒等待同一個結果。
+ *
+ * @author EnixLin
+ *
+ */
+class KeyCache {
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final Map<CacheKey, CachedKey> entries;
+	/** 解析中的金鑰，與entries以同一個鎖保護 */
+	private final Map<CacheKey, CompletableFuture<Key>> loading = new HashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxEntries 最多保留的金鑰數
+	 * @param ttlNanos   存活時間，0表示不限
+	 */
+	KeyCache(int maxEntries, long ttlNanos) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlNanos;
+		this.entries = new LinkedHashMap<CacheKey, CachedKey>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedKey> eldest) {
+				if (size() > KeyCache.this.maxEntries) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 取得快取中的金鑰，不存在或檔案已變動時以loader重新讀取
+	 *
+	 * @param path   金鑰檔案
+	 * @param format 讀取方式，例如PEM公鑰、DER私鑰
+	 * @param loader 實際讀取並解析金鑰的方法
+	 */
+	<K extends Key> K get(Path path, String format, Class<K> type, Supplier<K> loader) {
+		Path normalized = path.toAbsolutePath().normalize();
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(normalized, BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		}
+		CacheKey cacheKey = new CacheKey(normalized, format);
+		long now = System.nanoTime();
+
+		CompletableFuture<Key> pending;
+		synchronized (entries) {
+			CachedKey entry = entries.get(cacheKey);
+			if (entry != null) {
+				if (entry.matches(attributes) && (ttlNanos == 0 || now - entry.loadedAt < ttlNanos)) {
+					hits.increment();
+					return type.cast(entry.key);
+				}
+				entries.remove(cacheKey);
+				evictions.increment();
+			}
+			pending = loading.get(cacheKey);
+			if (pending == null)
+				loading.put(cacheKey, new CompletableFuture<>());
+		}
+		if (pending != null) {
+			// 其他執行緒正在解析同一檔案，等待其結果，視為命中
+			hits.increment();
+			return type.cast(await(pending));
+		}
+
+		// 讀取與解析不持有鎖
+		misses.increment();
+		K key;
+		try {
+			key = loader.get();
+		} catch (RuntimeException | Error e) {
+			finishLoading(cacheKey).completeExceptionally(e);
+			throw e;
+		}
+		synchronized (entries) {
+			entries.put(cacheKey, new CachedKey(key, attributes.lastModifiedTime(), attributes.size(), now));
+		}
+		finishLoading(cacheKey).complete(key);
+		return key;
+	}
+
+	private CompletableFuture<Key> finishLoading(CacheKey cacheKey) {
+		synchronized (entries) {
+			return loading.remove(cacheKey);
+		}
+	}
+
+	/**
+	 * 等待其他執行緒的解析結果，失敗時拋出與該執行緒相同的例外
+	 */
+	private static Key await(CompletableFuture<Key> pending) {
+		try {
+			return pending.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	KeyCacheStats stats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new KeyCacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	private static final class CacheKey {
+
+		private final Path path;
+		private final String format;
+
+		CacheKey(Path path, String format) {
+			this.path = path;
+			this.format = format;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return path.equals(other.path) && format.equals(other.format);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, format);
+		}
+	}
+
+	private static final class CachedKey {
+
+		private final Key key;
+		private final FileTime lastModified;
+		private final long size;
+		private final long loadedAt;
+
+		CachedKey(Key key, FileTime lastModified, long size, long loadedAt) {
+			this.key = key;
+			this.lastModified = lastModified;
+			this.size = size;
+			this.loadedAt = loadedAt;
+		}
+
+		boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+		}
+	}
+}
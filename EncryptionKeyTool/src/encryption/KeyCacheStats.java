@@ -0,0 +1,53 @@
+package encryption;
+
+/**
+ * 金鑰快取的統計數據
+ *
+ * @author EnixLin
+ *
+ */
+public class KeyCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final int size;
+
+	KeyCacheStats(long hitCount, long missCount, long evictionCount, int size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	/** 直接由快取取得的次數 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/** 需要讀檔解析的次數 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/** 因數量上限、過期或檔案變動而移除的次數 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/** 目前快取中的金鑰數 */
+	public int getSize() {
+		return size;
+	}
+
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("hits=%d, misses=%d, evictions=%d, size=%d, hitRate=%.2f", hitCount, missCount,
+				evictionCount, size, getHitRate());
+	}
+}
@@ -0,0 +1,83 @@
+package encryption;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * RSAKeyUtil產生、讀取與儲存金鑰的JFR事件<p>
+ * 金鑰操作次數少，門檻預設為0，全部記錄；讀取金鑰命中快取時不產生事件。<br>
+ * 與{@link CryptoEvent}相同，Flight Recorder未啟動時不建立JFR事件，不拖慢第一次讀取金鑰。
+ *
+ * @author EnixLin
+ *
+ */
+final class KeyEvent {
+
+	static final String NAME = "encryption.KeyOperation";
+
+	/** 錄製中的JFR事件，Flight Recorder未啟動時為null */
+	private final Recorded recorded;
+
+	private KeyEvent(Recorded recorded) {
+		this.recorded = recorded;
+	}
+
+	static KeyEvent start() {
+		Recorded recorded = null;
+		if (FlightRecorder.isInitialized()) {
+			recorded = new Recorded();
+			recorded.begin();
+		}
+		return new KeyEvent(recorded);
+	}
+
+	/**
+	 * 結束計時，超過門檻時寫入錄製
+	 *
+	 * @param format 金鑰格式，例如 PEM private，沒有時為null
+	 * @param path   檔案位置，沒有時為null
+	 */
+	void finish(CryptoMetrics.Operation operation, String format, Object path, int keySize, boolean success) {
+		if (recorded == null)
+			return;
+		recorded.end();
+		if (recorded.shouldCommit()) {
+			recorded.operation = operation.name();
+			recorded.format = format;
+			recorded.path = path == null ? null : path.toString();
+			recorded.keySize = keySize;
+			recorded.success = success;
+			recorded.commit();
+		}
+	}
+
+	@Name(KeyEvent.NAME)
+	@Label("Key Operation")
+	@Category({ "Encryption" })
+	@Description("Key generation, loading or saving performed by RSAKeyUtil")
+	@Threshold("0 ms")
+	@StackTrace(false)
+	static final class Recorded extends Event {
+
+		@Label("Operation")
+		String operation;
+
+		@Label("Format")
+		String format;
+
+		@Label("Path")
+		String path;
+
+		@Label("Key Size")
+		int keySize;
+
+		@Label("Success")
+		boolean success;
+	}
+}
@@ -0,0 +1,110 @@
+package encryption;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAKey;
+import java.security.interfaces.XECPrivateKey;
+import java.security.interfaces.XECPublicKey;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPublicKeySpec;
+
+import javax.crypto.KeyAgreement;
+
+/**
+ * 金鑰指紋，以8 byte識別一把金鑰，可附在密文前以判斷該用哪把私鑰解密<p>
+ * RSA金鑰取modulus的SHA-256；EC與XDH金鑰取公鑰座標(EC為x、XDH為u)的SHA-256，
+ * 私鑰以自己與曲線基點做金鑰交換求得此座標，因此公鑰與對應的私鑰指紋相同；
+ * 其他公鑰取X509編碼的SHA-256。皆取雜湊的前8 byte。
+ *
+ * @author EnixLin
+ *
+ */
+public final class KeyFingerprint {
+
+	private KeyFingerprint() {
+	}
+
+	/**
+	 * 計算金鑰指紋
+	 *
+	 * @param key RSA、EC、XDH公私鑰，或其他演算法的公鑰
+	 * @return 8 byte指紋
+	 */
+	public static long of(Key key) {
+		byte[] material;
+		if (key instanceof RSAKey)
+			material = ((RSAKey) key).getModulus().toByteArray();
+		else if (key instanceof ECPublicKey)
+			material = ((ECPublicKey) key).getW().getAffineX().toByteArray();
+		else if (key instanceof XECPublicKey)
+			material = ((XECPublicKey) key).getU().toByteArray();
+		else if (key instanceof ECPrivateKey || key instanceof XECPrivateKey)
+			material = publicCoordinate((PrivateKey) key).toByteArray();
+		else if (key instanceof PublicKey)
+			material = key.getEncoded();
+		else
+			throw new RuntimeException("Fingerprint of a " + key.getAlgorithm()
+					+ " private key is not supported, please use the public key instead.");
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(material)).getLong();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("No Such Algorithm. Please check again.");
+		}
+	}
+
+	/**
+	 * 以私鑰與曲線基點做金鑰交換，共享秘密即為對應公鑰的座標：ECDH得x、XDH得u(little-endian)
+	 */
+	private static BigInteger publicCoordinate(PrivateKey privateKey) {
+		try {
+			KeyAgreement agreement;
+			PublicKey basePoint;
+			if (privateKey instanceof ECPrivateKey) {
+				ECParameterSpec params = ((ECPrivateKey) privateKey).getParams();
+				agreement = KeyAgreement.getInstance("ECDH");
+				basePoint = KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(params.getGenerator(), params));
+			} else {
+				NamedParameterSpec params = (NamedParameterSpec) ((XECPrivateKey) privateKey).getParams();
+				// X25519的基點u為9，X448為5
+				BigInteger u = BigInteger.valueOf(params.getName().equalsIgnoreCase("X448") ? 5 : 9);
+				agreement = KeyAgreement.getInstance("XDH");
+				basePoint = KeyFactory.getInstance("XDH").generatePublic(new XECPublicKeySpec(params, u));
+			}
+			agreement.init(privateKey);
+			agreement.doPhase(basePoint, true);
+			byte[] coordinate = agreement.generateSecret();
+			if (privateKey instanceof XECPrivateKey)
+				reverse(coordinate);
+			return new BigInteger(1, coordinate);
+		} catch (GeneralSecurityException | ClassCastException e) {
+			throw new RuntimeException("Fingerprint of a " + privateKey.getAlgorithm()
+					+ " private key is not supported, please use the public key instead. " + e.getMessage());
+		}
+	}
+
+	private static void reverse(byte[] bytes) {
+		for (int i = 0, j = bytes.length - 1; i < j; i++, j--) {
+			byte b = bytes[i];
+			bytes[i] = bytes[j];
+			bytes[j] = b;
+		}
+	}
+
+	/**
+	 * 以16位十六進位字串表示指紋，可作為金鑰ID
+	 */
+	public static String toHex(long fingerprint) {
+		return String.format("%016x", fingerprint);
+	}
+}
@@ -0,0 +1,93 @@
+package encryption;
+
+/**
+ * 某一操作、金鑰長度與結果在取得快照當下的統計數據
+ *
+ * @author EnixLin
+ *
+ */
+public class OperationStats {
+
+	private final CryptoMetrics.Operation operation;
+	private final int keySize;
+	private final boolean success;
+	private final long[] bucketCounts;
+	private final long count;
+	private final long totalNanos;
+
+	OperationStats(CryptoMetrics.Operation operation, int keySize, boolean success, long[] bucketCounts,
+			long totalNanos) {
+		this.operation = operation;
+		this.keySize = keySize;
+		this.success = success;
+		this.bucketCounts = bucketCounts;
+		long count = 0;
+		for (long bucketCount : bucketCounts) {
+			count += bucketCount;
+		}
+		this.count = count;
+		this.totalNanos = totalNanos;
+	}
+
+	public CryptoMetrics.Operation getOperation() {
+		return operation;
+	}
+
+	/** 金鑰長度，無法得知時為0 */
+	public int getKeySize() {
+		return keySize;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMeanMillis() {
+		return count == 0 ? 0 : totalNanos / 1_000_000.0 / count;
+	}
+
+	/**
+	 * 估計的百分位延遲，為該百分位所在級距的上限，誤差在2倍以內
+	 *
+	 * @param percentile 0到100，例如99
+	 * @return 毫秒，沒有資料時為0
+	 */
+	public double getPercentileMillis(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100.0);
+		long seen = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seen += bucketCounts[i];
+			if (seen >= Math.max(1, rank)) {
+				// 最後一級沒有上限，以前一級的上限表示
+				return OperationTimer.upperBoundNanos(Math.min(i, bucketCounts.length - 2)) / 1_000_000.0;
+			}
+		}
+		return OperationTimer.upperBoundNanos(bucketCounts.length - 2) / 1_000_000.0;
+	}
+
+	/**
+	 * 各級距的次數，級距i的上限為 1024 &lt;&lt; i 奈秒
+	 */
+	public long[] getBucketCounts() {
+		return bucketCounts.clone();
+	}
+
+	/**
+	 * 以 操作/金鑰長度/結果 表示，例如 DECRYPT/2048/failure，作為JMX中的名稱
+	 */
+	public String getName() {
+		return operation + "/" + keySize + "/" + (success ? "success" : "failure");
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s count=%d mean=%.3fms p50=%.3fms p99=%.3fms", getName(), count, getMeanMillis(),
+				getPercentileMillis(50), getPercentileMillis(99));
+	}
+}
@@ -0,0 +1,360 @@
+package encryption;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 將大量金鑰打包在單一檔案中的金鑰庫，以記憶體映射讀取<p>
+ * 檔案開頭為以金鑰ID的FNV-1a雜湊建立的開放定址索引，開啟時只需映射一次檔案，
+ * 查詢為O(1)，金鑰在第一次取用時才解碼並保留。
+ *
+ * <pre>
+ * 表頭    'E' 'K' | 版本(1) | 演算法名稱長度(1) | 演算法名稱 | 金鑰數(4) | 索引槽數(4)
+ * 索引槽  雜湊(8) | 金鑰序號+1(4)，0為空槽
+ * 位置表  每把金鑰的紀錄位置(8)
+ * 紀錄    類型(1) | ID長度(2) | ID(UTF-8) | DER長度(4) | DER內容
+ * </pre>
+ *
+ * @author EnixLin
+ *
+ */
+public class PackedKeyStore {
+
+	private static final byte MAGIC_0 = 'E';
+	private static final byte MAGIC_1 = 'K';
+	private static final byte VERSION = 1;
+	private static final int SLOT_BYTES = 12;
+
+	private static final byte TYPE_PUBLIC = 0;
+	private static final byte TYPE_PRIVATE = 1;
+
+	private final MappedByteBuffer buffer;
+	private final String algorithm;
+	private final int entryCount;
+	private final int slotCount;
+	private final int slotsStart;
+	private final int offsetsStart;
+	/** 已解碼的金鑰，以金鑰序號為索引 */
+	private final AtomicReferenceArray<Key> decodedKeys;
+	private final ThreadLocal<KeyFactory> factories;
+
+	private PackedKeyStore(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.limit() < 4 || buffer.get(0) != MAGIC_0 || buffer.get(1) != MAGIC_1)
+			throw new RuntimeException("Invalid key store file. Bad magic number.");
+		if (buffer.get(2) != VERSION)
+			throw new RuntimeException("Unsupported key store version " + buffer.get(2) + ".");
+		try {
+			int algorithmLength = buffer.get(3) & 0xFF;
+			byte[] algorithmBytes = new byte[algorithmLength];
+			buffer.duplicate().position(4).get(algorithmBytes);
+			this.algorithm = new String(algorithmBytes, StandardCharsets.US_ASCII);
+			int countsStart = 4 + algorithmLength;
+			this.entryCount = buffer.getInt(countsStart);
+			this.slotCount = buffer.getInt(countsStart + 4);
+			this.slotsStart = countsStart + 8;
+			if (slotCount < 0 || slotCount > buffer.limit() / SLOT_BYTES)
+				throw new RuntimeException("Invalid key store file. Index is corrupted.");
+			this.offsetsStart = slotsStart + slotCount * SLOT_BYTES;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new RuntimeException("Invalid key store file. Header is truncated.");
+		}
+		if (entryCount < 0 || slotCount <= entryCount || Integer.bitCount(slotCount) != 1
+				|| (long) offsetsStart + (long) entryCount * 8 > buffer.limit())
+			throw new RuntimeException("Invalid key store file. Index is corrupted.");
+		this.decodedKeys = new AtomicReferenceArray<>(entryCount);
+		this.factories = ThreadLocal.withInitial(() -> newKeyFactory(algorithm));
+	}
+
+	/**
+	 * 映射金鑰庫檔案，只讀取表頭，金鑰於取用時才解碼
+	 *
+	 * @param path 由{@link Writer}寫出的檔案
+	 * @return
+	 */
+	public static PackedKeyStore open(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new RuntimeException("Key store file is too large.");
+			return new PackedKeyStore(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：Opening key store failure." + e.getMessage());
+		}
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * 金鑰庫中的金鑰數，公私鑰分開計算
+	 */
+	public int size() {
+		return entryCount;
+	}
+
+	/**
+	 * 取得公鑰
+	 *
+	 * @param keyId 金鑰ID
+	 * @return 不存在時為null
+	 */
+	public PublicKey getPublicKey(String keyId) {
+		return (PublicKey) getKey(TYPE_PUBLIC, keyId);
+	}
+
+	/**
+	 * 取得私鑰
+	 *
+	 * @param keyId 金鑰ID
+	 * @return 不存在時為null
+	 */
+	public PrivateKey getPrivateKey(String keyId) {
+		return (PrivateKey) getKey(TYPE_PRIVATE, keyId);
+	}
+
+	public boolean containsPublicKey(String keyId) {
+		return find(TYPE_PUBLIC, keyId.getBytes(StandardCharsets.UTF_8)) >= 0;
+	}
+
+	public boolean containsPrivateKey(String keyId) {
+		return find(TYPE_PRIVATE, keyId.getBytes(StandardCharsets.UTF_8)) >= 0;
+	}
+
+	/**
+	 * 依寫入順序列出所有金鑰ID，同時有公私鑰的ID只列一次
+	 */
+	public List<String> getKeyIds() {
+		Map<String, Boolean> keyIds = new LinkedHashMap<>();
+		for (int index = 0; index < entryCount; index++) {
+			int record = recordOffset(index);
+			byte[] id = new byte[buffer.getShort(record + 1) & 0xFFFF];
+			buffer.duplicate().position(record + 3).get(id);
+			keyIds.put(new String(id, StandardCharsets.UTF_8), Boolean.TRUE);
+		}
+		return new ArrayList<>(keyIds.keySet());
+	}
+
+	private Key getKey(byte type, String keyId) {
+		int index = find(type, keyId.getBytes(StandardCharsets.UTF_8));
+		if (index < 0)
+			return null;
+		Key key = decodedKeys.get(index);
+		if (key == null) {
+			// 多個執行緒同時解碼時結果相同，保留先寫入的即可
+			decodedKeys.compareAndSet(index, null, decode(type, index));
+			key = decodedKeys.get(index);
+		}
+		return key;
+	}
+
+	/**
+	 * 以線性探測尋找金鑰序號
+	 *
+	 * @return 找不到時為-1
+	 */
+	private int find(byte type, byte[] id) {
+		long hash = hash(type, id);
+		int mask = slotCount - 1;
+		for (int slot = (int) hash & mask, probes = 0; probes < slotCount; slot = (slot + 1) & mask, probes++) {
+			int position = slotsStart + slot * SLOT_BYTES;
+			int index = buffer.getInt(position + 8) - 1;
+			if (index < 0)
+				return -1;
+			if (buffer.getLong(position) == hash && index < entryCount && matches(index, type, id))
+				return index;
+		}
+		return -1;
+	}
+
+	private boolean matches(int index, byte type, byte[] id) {
+		int record = recordOffset(index);
+		if (buffer.get(record) != type || (buffer.getShort(record + 1) & 0xFFFF) != id.length)
+			return false;
+		for (int i = 0; i < id.length; i++) {
+			if (buffer.get(record + 3 + i) != id[i])
+				return false;
+		}
+		return true;
+	}
+
+	private Key decode(byte type, int index) {
+		int record = recordOffset(index);
+		int derStart = record + 3 + (buffer.getShort(record + 1) & 0xFFFF);
+		byte[] der = new byte[buffer.getInt(derStart)];
+		buffer.duplicate().position(derStart + 4).get(der);
+		try {
+			if (type == TYPE_PUBLIC)
+				return factories.get().generatePublic(new X509EncodedKeySpec(der));
+			return factories.get().generatePrivate(new PKCS8EncodedKeySpec(der));
+		} catch (InvalidKeySpecException e) {
+			throw new RuntimeException("InvalidKeySpecException. Key store entry is corrupted. " + e.getMessage());
+		}
+	}
+
+	private int recordOffset(int index) {
+		long offset = buffer.getLong(offsetsStart + index * 8);
+		if (offset < 0 || offset > buffer.limit() - 3)
+			throw new RuntimeException("Invalid key store file. Index is corrupted.");
+		return (int) offset;
+	}
+
+	/**
+	 * FNV-1a 64位元雜湊，類型與ID一起計算，同一ID的公私鑰位於不同索引槽
+	 */
+	private static long hash(byte type, byte[] id) {
+		long hash = 0xcbf29ce484222325L;
+		hash = (hash ^ type) * 0x100000001b3L;
+		for (byte b : id) {
+			hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static KeyFactory newKeyFactory(String algorithm) {
+		try {
+			return KeyFactory.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("No Such Algorithm. Please check again.");
+		}
+	}
+
+	/**
+	 * 收集金鑰後一次寫出金鑰庫檔案，所有金鑰須為同一演算法
+	 */
+	public static class Writer {
+
+		private final Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+		private final Map<String, PrivateKey> privateKeys = new LinkedHashMap<>();
+		private String algorithm;
+
+		public Writer addPublicKey(String keyId, PublicKey publicKey) {
+			checkAlgorithm(publicKey);
+			if (publicKeys.putIfAbsent(checkKeyId(keyId), publicKey) != null)
+				throw new RuntimeException("Duplicate public key id " + keyId + ".");
+			return this;
+		}
+
+		public Writer addPrivateKey(String keyId, PrivateKey privateKey) {
+			checkAlgorithm(privateKey);
+			if (privateKeys.putIfAbsent(checkKeyId(keyId), privateKey) != null)
+				throw new RuntimeException("Duplicate private key id " + keyId + ".");
+			return this;
+		}
+
+		public Writer addKeyPair(String keyId, KeyPair keyPair) {
+			addPublicKey(keyId, keyPair.getPublic());
+			return addPrivateKey(keyId, keyPair.getPrivate());
+		}
+
+		/**
+		 * 寫出至指定位置，已存在的檔案會被覆蓋
+		 *
+		 * @param path
+		 */
+		public void write(Path path) {
+
+			List<byte[]> ids = new ArrayList<>();
+			List<Byte> types = new ArrayList<>();
+			List<byte[]> ders = new ArrayList<>();
+			publicKeys.forEach((keyId, key) -> {
+				ids.add(keyId.getBytes(StandardCharsets.UTF_8));
+				types.add(TYPE_PUBLIC);
+				ders.add(key.getEncoded());
+			});
+			privateKeys.forEach((keyId, key) -> {
+				ids.add(keyId.getBytes(StandardCharsets.UTF_8));
+				types.add(TYPE_PRIVATE);
+				ders.add(key.getEncoded());
+			});
+
+			int entryCount = ids.size();
+			// 負載率不超過一半，探測長度維持很短
+			int slotCount = Integer.highestOneBit(Math.max(2, entryCount * 2 - 1)) << 1;
+			long[] slotHashes = new long[slotCount];
+			int[] slotIndexes = new int[slotCount];
+			for (int index = 0; index < entryCount; index++) {
+				long hash = hash(types.get(index), ids.get(index));
+				int slot = (int) hash & (slotCount - 1);
+				while (slotIndexes[slot] != 0)
+					slot = (slot + 1) & (slotCount - 1);
+				slotHashes[slot] = hash;
+				slotIndexes[slot] = index + 1;
+			}
+
+			byte[] algorithmBytes = (algorithm == null ? "RSA" : algorithm).getBytes(StandardCharsets.US_ASCII);
+			long offset = 4 + algorithmBytes.length + 8 + (long) slotCount * SLOT_BYTES + (long) entryCount * 8;
+			long[] recordOffsets = new long[entryCount];
+			for (int index = 0; index < entryCount; index++) {
+				recordOffsets[index] = offset;
+				offset += 3 + ids.get(index).length + 4 + ders.get(index).length;
+			}
+			if (offset > Integer.MAX_VALUE)
+				throw new RuntimeException("Key store file is too large.");
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)))) {
+				out.writeByte(MAGIC_0);
+				out.writeByte(MAGIC_1);
+				out.writeByte(VERSION);
+				out.writeByte(algorithmBytes.length);
+				out.write(algorithmBytes);
+				out.writeInt(entryCount);
+				out.writeInt(slotCount);
+				for (int slot = 0; slot < slotCount; slot++) {
+					out.writeLong(slotHashes[slot]);
+					out.writeInt(slotIndexes[slot]);
+				}
+				for (long recordOffset : recordOffsets) {
+					out.writeLong(recordOffset);
+				}
+				for (int index = 0; index < entryCount; index++) {
+					out.writeByte(types.get(index));
+					out.writeShort(ids.get(index).length);
+					out.write(ids.get(index));
+					out.writeInt(ders.get(index).length);
+					out.write(ders.get(index));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("IOException：Saving key store failure." + e.getMessage());
+			}
+		}
+
+		private void checkAlgorithm(Key key) {
+			if (algorithm == null)
+				algorithm = key.getAlgorithm();
+			else if (!algorithm.equals(key.getAlgorithm()))
+				throw new RuntimeException("All keys in a key store must use the same algorithm.");
+		}
+
+		private static String checkKeyId(String keyId) {
+			if (keyId.getBytes(StandardCharsets.UTF_8).length > 0xFFFF)
+				throw new RuntimeException("Key id is too long.");
+			return keyId;
+		}
+	}
+}
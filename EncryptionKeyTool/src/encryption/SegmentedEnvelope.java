@@ -0,0 +1,262 @@
+package encryption;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 分段信封加密的格式定義，供串流、大檔案等不便一次載入記憶體的資料使用<p>
+ * 明文切成固定大小的分段，每段以同一把AES金鑰、不同的nonce各自做AES-GCM加密，格式如下：
+ *
+ * <pre>
+ * 表頭：magic(2) | version(1) | flags(1) | 分段大小(4) | 包裝後金鑰長度(2) | 包裝後金鑰 | nonce前綴(7)
+ * 分段：密文 + GCM tag(16)，重複至結尾
+ * </pre>
+ *
+ * 每段的nonce為 nonce前綴(7) | 分段序號(4) | 是否為最後一段(1)，AAD為整個表頭。
+ * flags與{@link Envelope}相同，壓縮時分段的是壓縮後的內容。
+ * 除最後一段外，每段明文長度皆等於分段大小；最後一段必定較短(可為0)，
+ * 因此由密文總長度即可算出分段數與各段位置，亦可偵測被截斷的資料。
+ *
+ * @author EnixLin
+ *
+ */
+final class SegmentedEnvelope {
+
+	/** 分段格式 */
+	static final byte VERSION_SEGMENTED = 2;
+	static final int NONCE_PREFIX_LENGTH = 7;
+	static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+	/** 分段大小上限，表頭為未驗證的輸入，超過者不配置緩衝區直接拒絕 */
+	static final int MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+	/** 表頭中除包裝後金鑰以外的固定長度 */
+	private static final int FIXED_HEADER_LENGTH = 2 + 1 + 1 + 4 + 2 + NONCE_PREFIX_LENGTH;
+
+	private SegmentedEnvelope() {
+	}
+
+	/**
+	 * 建立新的表頭，nonce前綴隨機產生
+	 */
+	static Header newHeader(SecureRandom random, int flags, int segmentSize, byte[] wrappedKey) {
+		byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+		random.nextBytes(noncePrefix);
+		return new Header(flags, segmentSize, wrappedKey, noncePrefix);
+	}
+
+	/**
+	 * 由通道讀取並解析表頭，讀取後通道位置停在第一個分段的開頭
+	 */
+	static Header readHeader(ReadableByteChannel in) throws IOException {
+		ByteBuffer fixed = ByteBuffer.allocate(10);
+		readFully(in, fixed);
+		if (fixed.hasRemaining())
+			throw new EOFException("Stream is too short for an envelope header.");
+		if (fixed.get(0) != Envelope.MAGIC_0 || fixed.get(1) != Envelope.MAGIC_1
+				|| fixed.get(2) != VERSION_SEGMENTED)
+			throw new IOException("Not a segmented envelope.");
+		int flags = fixed.get(3) & 0xFF;
+		int segmentSize = fixed.getInt(4);
+		int wrappedKeyLength = fixed.getShort(8) & 0xFFFF;
+		checkSegmentSize(segmentSize);
+
+		ByteBuffer variable = ByteBuffer.allocate(wrappedKeyLength + NONCE_PREFIX_LENGTH);
+		readFully(in, variable);
+		if (variable.hasRemaining())
+			throw new EOFException("Envelope header is truncated.");
+		byte[] wrappedKey = new byte[wrappedKeyLength];
+		byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+		variable.flip();
+		variable.get(wrappedKey).get(noncePrefix);
+		return new Header(flags, segmentSize, wrappedKey, noncePrefix);
+	}
+
+	/**
+	 * 由記憶體中的資料解析表頭
+	 */
+	static Header readHeader(byte[] data) throws IOException {
+		return readHeader(Channels.newChannel(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * 串流加密，記憶體用量固定為兩個分段大小
+	 *
+	 * @return 明文總長度
+	 */
+	static long encrypt(Cipher cipher, SecretKeySpec key, Header header, ReadableByteChannel in,
+			WritableByteChannel out) throws IOException, GeneralSecurityException {
+
+		writeFully(out, ByteBuffer.wrap(header.encoded));
+		ByteBuffer plain = ByteBuffer.allocate(checkSegmentSize(header.segmentSize));
+		ByteBuffer sealed = ByteBuffer.allocate(sealedSegmentSize(header.segmentSize));
+		long total = 0;
+		for (int index = 0;; index++) {
+			plain.clear();
+			readFully(in, plain);
+			boolean last = plain.hasRemaining();
+			plain.flip();
+			total += plain.remaining();
+			sealed.clear();
+			encryptSegment(cipher, key, header, index, last, plain, sealed);
+			sealed.flip();
+			writeFully(out, sealed);
+			if (last)
+				return total;
+			if (index == Integer.MAX_VALUE)
+				throw new IOException("Too many segments.");
+		}
+	}
+
+	/**
+	 * 串流解密，通道位置須在第一個分段的開頭(即已呼叫過{@link #readHeader(ReadableByteChannel)})
+	 *
+	 * @return 明文總長度
+	 */
+	static long decrypt(Cipher cipher, SecretKeySpec key, Header header, ReadableByteChannel in,
+			WritableByteChannel out) throws IOException, GeneralSecurityException {
+
+		ByteBuffer sealed = ByteBuffer.allocate(sealedSegmentSize(header.segmentSize));
+		ByteBuffer plain = ByteBuffer.allocate(checkSegmentSize(header.segmentSize));
+		long total = 0;
+		for (int index = 0;; index++) {
+			sealed.clear();
+			readFully(in, sealed);
+			boolean last = sealed.hasRemaining();
+			sealed.flip();
+			if (sealed.remaining() < Envelope.TAG_LENGTH)
+				throw new AEADBadTagException("Envelope is truncated.");
+			plain.clear();
+			decryptSegment(cipher, key, header, index, last, sealed, plain);
+			plain.flip();
+			total += plain.remaining();
+			writeFully(out, plain);
+			if (last)
+				return total;
+		}
+	}
+
+	/**
+	 * 加密單一分段，plain剩餘內容全部加密寫入sealed
+	 */
+	static void encryptSegment(Cipher cipher, SecretKeySpec key, Header header, int index, boolean last,
+			ByteBuffer plain, ByteBuffer sealed) throws GeneralSecurityException {
+		cipher.init(Cipher.ENCRYPT_MODE, key, nonce(header.noncePrefix, index, last));
+		cipher.updateAAD(header.encoded);
+		cipher.doFinal(plain, sealed);
+	}
+
+	/**
+	 * 解密單一分段，sealed剩餘內容全部解密寫入plain
+	 */
+	static void decryptSegment(Cipher cipher, SecretKeySpec key, Header header, int index, boolean last,
+			ByteBuffer sealed, ByteBuffer plain) throws GeneralSecurityException {
+		cipher.init(Cipher.DECRYPT_MODE, key, nonce(header.noncePrefix, index, last));
+		cipher.updateAAD(header.encoded);
+		cipher.doFinal(sealed, plain);
+	}
+
+	static GCMParameterSpec nonce(byte[] noncePrefix, int index, boolean last) {
+		byte[] nonce = new byte[Envelope.IV_LENGTH];
+		System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+		nonce[7] = (byte) (index >>> 24);
+		nonce[8] = (byte) (index >>> 16);
+		nonce[9] = (byte) (index >>> 8);
+		nonce[10] = (byte) index;
+		nonce[11] = (byte) (last ? 1 : 0);
+		return new GCMParameterSpec(Envelope.TAG_LENGTH * 8, nonce);
+	}
+
+	/**
+	 * 確認分段大小介於1與{@link #MAX_SEGMENT_SIZE}之間
+	 *
+	 * @return segmentSize
+	 */
+	static int checkSegmentSize(int segmentSize) throws IOException {
+		if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+			throw new IOException("Invalid segment size " + segmentSize + ".");
+		return segmentSize;
+	}
+
+	/**
+	 * 完整分段加上GCM tag的長度
+	 */
+	static int sealedSegmentSize(int segmentSize) throws IOException {
+		return checkSegmentSize(segmentSize) + Envelope.TAG_LENGTH;
+	}
+
+	/**
+	 * 明文長度對應的分段數(含最後一段)
+	 */
+	static long segmentCount(long plainLength, int segmentSize) {
+		return plainLength / segmentSize + 1;
+	}
+
+	/**
+	 * 明文長度對應的密文分段總長度(不含表頭)
+	 */
+	static long sealedLength(long plainLength, int segmentSize) {
+		return plainLength + segmentCount(plainLength, segmentSize) * Envelope.TAG_LENGTH;
+	}
+
+	/**
+	 * 密文分段總長度(不含表頭)對應的明文長度，長度不合法時回傳-1
+	 */
+	static long plainLength(long sealedLength, int segmentSize) {
+		long fullSegment = (long) segmentSize + Envelope.TAG_LENGTH;
+		long lastSegment = sealedLength % fullSegment;
+		if (lastSegment < Envelope.TAG_LENGTH)
+			return -1;
+		return sealedLength / fullSegment * segmentSize + lastSegment - Envelope.TAG_LENGTH;
+	}
+
+	static void readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer) < 0)
+				return;
+		}
+	}
+
+	static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	static final class Header {
+
+		final int flags;
+		final int segmentSize;
+		final byte[] wrappedKey;
+		final byte[] noncePrefix;
+		/** 編碼後的完整表頭，同時作為每個分段的AAD */
+		final byte[] encoded;
+
+		Header(int flags, int segmentSize, byte[] wrappedKey, byte[] noncePrefix) {
+			if (wrappedKey.length > 0xFFFF)
+				throw new IllegalArgumentException("Wrapped key is too long.");
+			this.flags = flags;
+			this.segmentSize = segmentSize;
+			this.wrappedKey = wrappedKey;
+			this.noncePrefix = noncePrefix;
+			this.encoded = ByteBuffer.allocate(FIXED_HEADER_LENGTH + wrappedKey.length)
+					.put(Envelope.MAGIC_0).put(Envelope.MAGIC_1).put(VERSION_SEGMENTED).put((byte) flags)
+					.putInt(segmentSize).putShort((short) wrappedKey.length).put(wrappedKey).put(noncePrefix)
+					.array();
+		}
+
+		int length() {
+			return encoded.length;
+		}
+	}
+}
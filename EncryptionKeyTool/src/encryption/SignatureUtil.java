@@ -0,0 +1,474 @@
+package encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 數位簽章與驗證的工具類別，使用與{@link RSAKeyUtil}相同的PrivateKey、PublicKey<p>
+ * 已初始化的Signature由有界池管理，多執行緒可同時使用同一個實例，
+ * 不必每次重新getInstance與initSign、initVerify。
+ *
+ * @author EnixLin
+ *
+ */
+public class SignatureUtil {
+
+	private String algorithm;
+	private PrivateKey privateKey;
+	private PublicKey publicKey;
+	private int signaturePoolSize;
+	private EnginePool<Signature> signers, verifiers;
+	/** 簽章字串的Base64格式 */
+	private Base64Flavor base64Flavor;
+	/** 統計數據，未設定時不記錄 */
+	private CryptoMetrics metrics;
+	private OperationTimer signTimer, verifyTimer;
+	private int actualKeySize;
+
+	/** 批次驗證時，每次借出Signature連續處理的筆數 */
+	private static final int BATCH_CHUNK_SIZE = 64;
+	/** 串流簽章時每次讀取的大小 */
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * 未設定演算法時依金鑰決定：RSA為SHA256withRSA，EC為SHA256withECDSA，EdDSA為EdDSA
+	 */
+	private SignatureUtil() {
+		this.signaturePoolSize = Runtime.getRuntime().availableProcessors();
+		base64Flavor = Base64Flavor.MIME;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public PrivateKey getPrivateKey() {
+		return privateKey;
+	}
+
+	public PublicKey getPublicKey() {
+		return publicKey;
+	}
+
+	public int getSignaturePoolSize() {
+		return signaturePoolSize;
+	}
+
+	public CryptoMetrics getMetrics() {
+		return metrics;
+	}
+
+	public Base64Flavor getBase64Flavor() {
+		return base64Flavor;
+	}
+
+	public static class Builder {
+
+		/** 預設數值 */
+		SignatureUtil signatureUtil = new SignatureUtil();
+
+		/** 簽章演算法，例如 SHA256withRSA、RSASSA-PSS、SHA384withECDSA，未設定時依金鑰決定 */
+		public Builder setAlgorithm(String algorithm) {
+			signatureUtil.algorithm = algorithm;
+			return this;
+		}
+
+		/** 簽章用，僅能給定PKCS#8格式私鑰 */
+		public Builder setPrivateKey(PrivateKey privateKey) {
+			signatureUtil.privateKey = privateKey;
+			return this;
+		}
+
+		/** 驗證用，僅能給定X509格式公鑰 */
+		public Builder setPublicKey(PublicKey publicKey) {
+			signatureUtil.publicKey = publicKey;
+			return this;
+		}
+
+		/** 簽章、驗證各自最多保留的Signature數量，預設為CPU核心數 */
+		public Builder setSignaturePoolSize(int signaturePoolSize) {
+			signatureUtil.signaturePoolSize = signaturePoolSize;
+			return this;
+		}
+
+		/** 記錄簽章與驗證的次數與延遲，預設不記錄 */
+		public Builder setMetrics(CryptoMetrics metrics) {
+			signatureUtil.metrics = metrics;
+			return this;
+		}
+
+		/** 簽章字串的Base64格式，預設為MIME(每76字元換行)；簽章端與驗證端須使用相同的格式 */
+		public Builder setBase64Flavor(Base64Flavor base64Flavor) {
+			signatureUtil.base64Flavor = base64Flavor;
+			return this;
+		}
+
+		public SignatureUtil build() {
+
+			SignatureUtil util = signatureUtil;
+			if (util.signaturePoolSize < 1)
+				throw new RuntimeException("Utility building failure. Signature pool size must be positive.");
+			if (util.algorithm == null && (util.privateKey != null || util.publicKey != null))
+				util.algorithm = defaultAlgorithm(util.publicKey != null ? util.publicKey : util.privateKey);
+			// 先各建立一個Signature放入池中，金鑰或演算法有誤時於此拋出例外
+			if (util.privateKey != null) {
+				util.signers = new EnginePool<>(util.signaturePoolSize, util::createSigner);
+				util.signers.prefill(1);
+			}
+			if (util.publicKey != null) {
+				util.verifiers = new EnginePool<>(util.signaturePoolSize, util::createVerifier);
+				util.verifiers.prefill(1);
+			}
+			util.actualKeySize = CryptoMetrics.keySizeOf(util.publicKey != null ? util.publicKey : util.privateKey,
+					0);
+			if (util.metrics != null) {
+				util.signTimer = util.metrics.timer(CryptoMetrics.Operation.SIGN, util.actualKeySize);
+				util.verifyTimer = util.metrics.timer(CryptoMetrics.Operation.VERIFY, util.actualKeySize);
+			}
+			return util;
+		}
+	}
+
+	private static String defaultAlgorithm(Key key) {
+		switch (key.getAlgorithm()) {
+		case "EC":
+			return "SHA256withECDSA";
+		case "EdDSA":
+		case "Ed25519":
+		case "Ed448":
+			return "EdDSA";
+		default:
+			return "SHA256withRSA";
+		}
+	}
+
+	private Signature createSigner() {
+		try {
+			Signature signature = Signature.getInstance(algorithm);
+			signature.initSign(privateKey);
+			return signature;
+		} catch (InvalidKeyException | NoSuchAlgorithmException e) {
+			throw new RuntimeException("Utility building failure. " + e.getMessage());
+		}
+	}
+
+	private Signature createVerifier() {
+		try {
+			Signature signature = Signature.getInstance(algorithm);
+			signature.initVerify(publicKey);
+			return signature;
+		} catch (InvalidKeyException | NoSuchAlgorithmException e) {
+			throw new RuntimeException("Utility building failure. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 以私鑰對byte陣列簽章
+	 *
+	 * @param data 欲簽章的資料
+	 * @return 簽章
+	 */
+	public byte[] sign(byte[] data) {
+		return sign(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * 將字串取得UTF8之byte陣列後簽章，再使用Base64轉成字串表示
+	 *
+	 * @param data 欲簽章的字串
+	 * @return Base64的簽章
+	 */
+	public String signInString(String data) {
+		return base64Flavor.encodeToString(sign(data.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * 對data剩餘的內容簽章，可使用direct buffer
+	 *
+	 * @param data 欲簽章的內容，處理後position移至limit
+	 * @return 簽章
+	 */
+	public byte[] sign(ByteBuffer data) {
+		checkPrivateKey();
+		CryptoEvent event = CryptoEvent.start(data.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Signature signer = signers.borrow();
+			signer.update(data);
+			byte[] signature = signer.sign();
+			signers.release(signer);
+			event.outputSize = signature.length;
+			success = true;
+			return signature;
+		} catch (SignatureException e) {
+			throw new RuntimeException("Signing failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.SIGN, start, success);
+		}
+	}
+
+	/**
+	 * 以串流方式對大量資料簽章，記憶體用量固定<p>
+	 * 不會關閉傳入的串流
+	 *
+	 * @param input 欲簽章的資料來源
+	 * @return 簽章
+	 */
+	public byte[] sign(InputStream input) {
+		return sign(Channels.newChannel(input));
+	}
+
+	/**
+	 * 以串流方式對大量資料簽章，記憶體用量固定<p>
+	 * 不會關閉傳入的通道
+	 *
+	 * @param input 欲簽章的資料來源
+	 * @return 簽章
+	 */
+	public byte[] sign(ReadableByteChannel input) {
+		checkPrivateKey();
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Signature signer = signers.borrow();
+			event.inputSize = update(signer, input);
+			byte[] signature = signer.sign();
+			signers.release(signer);
+			event.outputSize = signature.length;
+			success = true;
+			return signature;
+		} catch (SignatureException e) {
+			throw new RuntimeException("Signing failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.SIGN, start, success);
+		}
+	}
+
+	/**
+	 * 以公鑰驗證byte陣列的簽章
+	 *
+	 * @param data      原始資料
+	 * @param signature 簽章
+	 * @return 簽章是否相符，簽章格式錯誤時同樣回傳false
+	 */
+	public boolean verify(byte[] data, byte[] signature) {
+		return verify(ByteBuffer.wrap(data), signature);
+	}
+
+	/**
+	 * 驗證{@link #signInString(String)}產生的簽章
+	 *
+	 * @param data            原始字串
+	 * @param base64Signature Base64的簽章
+	 * @return 簽章是否相符
+	 */
+	public boolean verifyInString(String data, String base64Signature) {
+		return verify(data.getBytes(StandardCharsets.UTF_8), base64Flavor.decode(base64Signature));
+	}
+
+	/**
+	 * 驗證data剩餘內容的簽章，可使用direct buffer
+	 *
+	 * @param data      原始資料，處理後position移至limit
+	 * @param signature 簽章
+	 * @return 簽章是否相符，簽章格式錯誤時同樣回傳false
+	 */
+	public boolean verify(ByteBuffer data, byte[] signature) {
+		checkPublicKey();
+		CryptoEvent event = CryptoEvent.start(data.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Signature verifier = verifiers.borrow();
+			verifier.update(data);
+			boolean verified = verifyAndRelease(verifier, signature);
+			success = true;
+			return verified;
+		} catch (SignatureException e) {
+			throw new RuntimeException("Verification failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.VERIFY, start, success);
+		}
+	}
+
+	/**
+	 * 以串流方式驗證大量資料的簽章，記憶體用量固定<p>
+	 * 不會關閉傳入的串流
+	 *
+	 * @param input     原始資料來源
+	 * @param signature 簽章
+	 * @return 簽章是否相符，簽章格式錯誤時同樣回傳false
+	 */
+	public boolean verify(InputStream input, byte[] signature) {
+		return verify(Channels.newChannel(input), signature);
+	}
+
+	/**
+	 * 以串流方式驗證大量資料的簽章，記憶體用量固定<p>
+	 * 不會關閉傳入的通道
+	 *
+	 * @param input     原始資料來源
+	 * @param signature 簽章
+	 * @return 簽章是否相符，簽章格式錯誤時同樣回傳false
+	 */
+	public boolean verify(ReadableByteChannel input, byte[] signature) {
+		checkPublicKey();
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			Signature verifier = verifiers.borrow();
+			event.inputSize = update(verifier, input);
+			boolean verified = verifyAndRelease(verifier, signature);
+			success = true;
+			return verified;
+		} catch (SignatureException e) {
+			throw new RuntimeException("Verification failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.VERIFY, start, success);
+		}
+	}
+
+	/**
+	 * 批次驗證多筆簽章，結果依輸入順序排列<p>
+	 * 資料切成固定大小的區塊，每個區塊只借出一次Signature，平行處理時可隨CPU核心數擴展
+	 *
+	 * @param data       原始資料
+	 * @param signatures 簽章，數量須與data相同
+	 * @param parallel   是否平行處理
+	 * @return 每筆簽章是否相符
+	 */
+	public boolean[] verifyAll(byte[][] data, byte[][] signatures, boolean parallel) {
+		checkPublicKey();
+		if (data.length != signatures.length)
+			throw new IllegalArgumentException("The number of data and signatures must be the same.");
+		return runBatch(data.length, parallel, (verifier, i) -> {
+			verifier.update(data[i]);
+			return verifier.verify(signatures[i]);
+		});
+	}
+
+	/**
+	 * 批次驗證{@link #signInString(String)}產生的簽章，結果依輸入順序排列
+	 *
+	 * @param data             原始字串
+	 * @param base64Signatures Base64的簽章，數量須與data相同
+	 * @param parallel         是否平行處理
+	 * @return 每筆簽章是否相符，Base64格式錯誤時為false
+	 */
+	public boolean[] verifyAllInString(List<String> data, List<String> base64Signatures, boolean parallel) {
+		checkPublicKey();
+		if (data.size() != base64Signatures.size())
+			throw new IllegalArgumentException("The number of data and signatures must be the same.");
+		return runBatch(data.size(), parallel, (verifier, i) -> {
+			byte[] signature;
+			try {
+				signature = base64Flavor.decode(base64Signatures.get(i));
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+			verifier.update(data.get(i).getBytes(StandardCharsets.UTF_8));
+			return verifier.verify(signature);
+		});
+	}
+
+	private boolean[] runBatch(int size, boolean parallel, BatchItem item) {
+		boolean[] results = new boolean[size];
+		int chunkCount = (size + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+		IntStream chunks = IntStream.range(0, chunkCount);
+		(parallel ? chunks.parallel() : chunks).forEach(chunk -> {
+			int from = chunk * BATCH_CHUNK_SIZE;
+			int to = Math.min(size, from + BATCH_CHUNK_SIZE);
+			Signature verifier = verifiers.borrow();
+			for (int i = from; i < to; i++) {
+				CryptoEvent event = CryptoEvent.start(-1);
+				long start = System.nanoTime();
+				try {
+					results[i] = item.apply(verifier, i);
+				} catch (SignatureException e) {
+					// 簽章格式錯誤視為不相符；失敗後的Signature狀態不明，改用新的
+					results[i] = false;
+					verifier = verifiers.borrow();
+				}
+				record(event, CryptoMetrics.Operation.VERIFY, start, true);
+			}
+			verifiers.release(verifier);
+		});
+		return results;
+	}
+
+	/**
+	 * 以已update完資料的verifier驗證後歸還；簽章格式錯誤時Signature狀態不明，不歸還並回傳false
+	 */
+	private boolean verifyAndRelease(Signature verifier, byte[] signature) {
+		try {
+			boolean verified = verifier.verify(signature);
+			verifiers.release(verifier);
+			return verified;
+		} catch (SignatureException e) {
+			return false;
+		}
+	}
+
+	private static long update(Signature signature, ReadableByteChannel input)
+			throws SignatureException, IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+		long length = 0;
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			if (read == 0)
+				continue;
+			buffer.flip();
+			signature.update(buffer);
+			buffer.clear();
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * 有設定統計時記錄一次操作，並結束JFR事件
+	 */
+	private void record(CryptoEvent event, CryptoMetrics.Operation operation, long start, boolean success) {
+		OperationTimer timer = operation == CryptoMetrics.Operation.SIGN ? signTimer : verifyTimer;
+		if (timer != null)
+			timer.record(start, success);
+		event.finish("SignatureUtil", operation, actualKeySize, success);
+	}
+
+	private void checkPublicKey() {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+	}
+
+	private void checkPrivateKey() {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+	}
+
+	/**
+	 * 以借出的Signature驗證第i筆資料
+	 */
+	private interface BatchItem {
+		boolean apply(Signature verifier, int i) throws SignatureException;
+	}
+}
@@ -18,8 +18,8 @@ public class HowToReadKeyAndEncryptData {
 		Path privateKeyPath = Paths.get("src/keyLocation/privateKey.pem");
 		// 先建立工具類別
 		RSAKeyUtil rsaKeyUtil = new RSAKeyUtil.Builder().setKeySize(2048).build();
-		// 讀取後可建立key物件，注意只限定PKCS#8的私鑰與X509的公鑰
-		// OpenSSL產生的私鑰是PKCS#1，必須先轉換過方可使用
+		// 讀取後可建立key物件，PEM私鑰可為PKCS#8或PKCS#1，公鑰可為X509或PKCS#1
+		// OpenSSL產生的PKCS#1私鑰可直接讀取，不必先轉換
 		PrivateKey privateKey = rsaKeyUtil.readPEMPrivateKey(privateKeyPath);
 		PublicKey publicKey = rsaKeyUtil.readPEMPublicKey(publicKeyPath);
 		
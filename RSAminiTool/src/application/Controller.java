@@ -6,10 +6,14 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.PrivateKey;
-import java.security.PublicKey;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -17,16 +21,31 @@ import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.DragEvent;
+import javafx.scene.input.Dragboard;
+import javafx.scene.input.TransferMode;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import utility.EncryptionUtil;
 import utility.RSAKeyUtil;
 
+/**
+ * 主畫面的控制器<p>
+ * 讀取金鑰與加解密皆在背景執行緒以javafx.concurrent.Task執行，不佔用JavaFX Application Thread，
+ * 執行中可取消；金鑰與建立好的EncryptionUtil依檔案與修改時間保留在{@link UtilityCache}中。<br>
+ * 拖入檔案清單的檔案以串流模式逐檔加解密至檔案，由{@link FileQueue}排程，內容不經過TextArea。
+ *
+ * @author EnixLin
+ *
+ */
 public class Controller implements Initializable {
 
 	// 注意：需於fxml文件中，使用fx:id表示其名稱，不是使用id
@@ -36,12 +55,18 @@ public class Controller implements Initializable {
 	private Button btnKeySize512, btnKeySize1024, btnKeySize2048;
 	@FXML
 	private Button btnEecryption, btnDecryption;
+	@FXML
+	private Button btnCancel;
+	@FXML
+	private ProgressBar progressBar;
 
 	@FXML
 	private RadioButton radioBtnPublicPEM, radioBtnPublicDER, radioBtnPrivatePEM, radioBtnPrivateDER;
+	@FXML
+	private RadioButton radioBtnFileEncrypt, radioBtnFileDecrypt;
 
 	@FXML
-	private ToggleGroup publicKeyFormat, privateKeyFormat;
+	private ToggleGroup publicKeyFormat, privateKeyFormat, fileMode;
 
 	@FXML
 	private TextField textFieldPublicKeyLocation, textFieldPrivateKeyLocation;
@@ -49,13 +74,36 @@ public class Controller implements Initializable {
 	private TextField textFieldKeySize;
 	@FXML
 	private TextField resultMessage;
+	@FXML
+	private TextField textFieldOutputDirectory;
+
+	@FXML
+	private ListView<FileJob> fileListView;
 
 	@FXML
 	private TextArea textAreaInput, textAreaOutput;
 
 	private RSAKeyUtil keyUtil;
-	private EncryptionUtil encryptionUtil;
+	private UtilityCache utilityCache;
 	private int keySize;
+	/** 依序執行加解密工作的背景執行緒，EncryptionUtil非執行緒安全，因此只用一條 */
+	private final ExecutorService cryptoExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "RSAminiTool-crypto");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private Task<String> currentTask;
+
+	/** 加密後檔案的副檔名 */
+	private static final String ENCRYPTED_SUFFIX = ".enc";
+	/** 解密的檔案沒有.enc副檔名時附加的副檔名 */
+	private static final String DECRYPTED_SUFFIX = ".dec";
+	/** 檔案模式同時處理的檔案數，磁碟讀寫為主，不需太多 */
+	private static final int FILE_WORKERS = Math.min(2, Runtime.getRuntime().availableProcessors());
+	private static final int FILE_QUEUE_CAPACITY = 1000;
+	private final FileQueue fileQueue = new FileQueue(FILE_WORKERS, FILE_QUEUE_CAPACITY);
+	/** 檔案模式的輸出目錄，為null時輸出至來源檔案的目錄 */
+	private Path outputDirectory;
 
 	private ExtensionFilter pemFilter, derFilter;
 
@@ -63,6 +111,10 @@ public class Controller implements Initializable {
 	public void initialize(URL arg0, ResourceBundle arg1) {
 		// 初始化可以不用寫也無所謂
 		keyUtil = new RSAKeyUtil.Builder().build(); // 僅用於讀取key，此處不設定keySize;
+		utilityCache = new UtilityCache(keyUtil);
+		btnCancel.setDisable(true);
+		fileListView.setItems(fileQueue.getJobs());
+		fileListView.setCellFactory(listView -> new FileJobCell());
 		// 副檔名過濾
 		pemFilter = new ExtensionFilter("Privacy Enhanced Mail (*.pem)", "*.pem");
 		derFilter = new ExtensionFilter("Distinguished Encoding Rules (*.der)", "*.der");
@@ -135,23 +187,24 @@ public class Controller implements Initializable {
 			return;
 		}
 		RadioButton selectedRadioButton = (RadioButton) privateKeyFormat.getSelectedToggle();
-		PrivateKey privateKey;
-		try {
-			if (selectedRadioButton.getText().startsWith("PEM")) {
-				privateKey = keyUtil.readPEMPrivateKey(file.toPath());
-			} else {
-				privateKey = keyUtil.readDERPrivateKey(file.toPath());
+		boolean pem = selectedRadioButton.getText().startsWith("PEM");
+		int keySize = this.keySize;
+		String input = textAreaInput.getText();
+		runTask(new Task<String>() {
+			@Override
+			protected String call() throws Exception {
+				updateProgress(0, 2);
+				updateMessage("Reading private key...");
+				EncryptionUtil encryptionUtil = utilityCache.forDecryption(file.toPath(), pem, keySize);
+				if (isCancelled())
+					return null;
+				updateProgress(1, 2);
+				updateMessage("Decrypting...");
+				String output = encryptionUtil.decryptInStringByPrivateKey(input);
+				updateProgress(2, 2);
+				return output;
 			}
-			encryptionUtil = new EncryptionUtil.Builder().setAlgorithm("RSA").setKeySize(keySize)
-					.setPrivateKey(privateKey).build();
-			String input = textAreaInput.getText();
-			String output = encryptionUtil.decryptInStringByPrivateKey(input);
-			textAreaOutput.setText(output);
-			resultMessage.setText("");
-		} catch (Exception e) {
-			textAreaOutput.setText("");
-			resultMessage.setText(e.getMessage());
-		}
+		});
 	}
 
 	@FXML
@@ -163,23 +216,159 @@ public class Controller implements Initializable {
 			return;
 		}
 		RadioButton selectedRadioButton = (RadioButton) publicKeyFormat.getSelectedToggle();
-		PublicKey publicKey;
-		try {
-			if (selectedRadioButton.getText().startsWith("PEM")) {
-				publicKey = keyUtil.readPEMPublicKey(file.toPath());
-			} else {
-				publicKey = keyUtil.readDERPublicKey(file.toPath());
+		boolean pem = selectedRadioButton.getText().startsWith("PEM");
+		int keySize = this.keySize;
+		String input = textAreaInput.getText();
+		runTask(new Task<String>() {
+			@Override
+			protected String call() throws Exception {
+				updateProgress(0, 2);
+				updateMessage("Reading public key...");
+				EncryptionUtil encryptionUtil = utilityCache.forEncryption(file.toPath(), pem, keySize);
+				if (isCancelled())
+					return null;
+				updateProgress(1, 2);
+				updateMessage("Encrypting...");
+				String output = encryptionUtil.encryptInStringByPublicKey(input);
+				StartupTiming.mark("first encryption");
+				updateProgress(2, 2);
+				return output;
 			}
-			encryptionUtil = new EncryptionUtil.Builder().setAlgorithm("RSA").setKeySize(keySize)
-					.setPublicKey(publicKey).build();
-			String input = textAreaInput.getText();
-			String output = encryptionUtil.encryptInStringByPublicKey(input);
-			textAreaOutput.setText(output);
-			resultMessage.setText("");
-		} catch (Exception e) {
+		});
+	}
+
+	/**
+	 * 取消執行中的加解密，正在進行的RSA運算無法中斷，但結果不會顯示
+	 */
+	@FXML
+	public void cancelTask(ActionEvent event) {
+		if (currentTask != null)
+			currentTask.cancel();
+	}
+
+	/**
+	 * 於背景執行緒執行加解密，期間停用加解密按鈕，結果於完成時顯示在輸出欄
+	 */
+	private void runTask(Task<String> task) {
+		if (currentTask != null && currentTask.isRunning())
+			return;
+		currentTask = task;
+		setRunning(true);
+		progressBar.progressProperty().bind(task.progressProperty());
+		task.messageProperty().addListener((observable, oldMessage, message) -> resultMessage.setText(message));
+		task.setOnSucceeded(e -> {
+			finishTask("");
+			textAreaOutput.setText(task.getValue());
+		});
+		task.setOnFailed(e -> {
+			finishTask(task.getException().getMessage());
 			textAreaOutput.setText("");
-			resultMessage.setText(e.getMessage());
+		});
+		task.setOnCancelled(e -> finishTask("Cancelled."));
+		cryptoExecutor.execute(task);
+	}
+
+	private void finishTask(String message) {
+		progressBar.progressProperty().unbind();
+		progressBar.setProgress(0);
+		resultMessage.setText(message);
+		setRunning(false);
+	}
+
+	private void setRunning(boolean running) {
+		btnEecryption.setDisable(running);
+		btnDecryption.setDisable(running);
+		btnCancel.setDisable(!running);
+	}
+
+	@FXML
+	public void getOutputDirectory(ActionEvent event) {
+		DirectoryChooser directoryChooser = new DirectoryChooser();
+		directoryChooser.setTitle("Choose Output Directory");
+		directoryChooser.setInitialDirectory(new File(System.getProperty("user.home") + "/Desktop"));
+		File directory = directoryChooser.showDialog(new Stage());
+		outputDirectory = directory == null ? null : directory.toPath();
+		textFieldOutputDirectory.setText(directory == null ? "Same directory as input files." : directory.toString());
+	}
+
+	@FXML
+	public void handleFileDragOver(DragEvent event) {
+		if (event.getDragboard().hasFiles())
+			event.acceptTransferModes(TransferMode.COPY);
+		event.consume();
+	}
+
+	@FXML
+	public void handleFileDropped(DragEvent event) {
+		Dragboard dragboard = event.getDragboard();
+		boolean accepted = dragboard.hasFiles();
+		if (accepted)
+			queueFiles(dragboard.getFiles());
+		event.setDropCompleted(accepted);
+		event.consume();
+	}
+
+	@FXML
+	public void cancelFiles(ActionEvent event) {
+		fileQueue.cancelAll();
+	}
+
+	@FXML
+	public void clearFiles(ActionEvent event) {
+		fileQueue.clearFinished();
+	}
+
+	/**
+	 * 於背景執行緒讀取金鑰並篩選出一般檔案後，將每個檔案加入檔案佇列<p>
+	 * 金鑰只讀取一次，各檔案的工作以同一把金鑰各自建立EncryptionUtil。
+	 */
+	private void queueFiles(List<File> files) {
+		boolean encrypt = fileMode.getSelectedToggle() == radioBtnFileEncrypt;
+		File keyFile = new File(encrypt ? textFieldPublicKeyLocation.getText() : textFieldPrivateKeyLocation.getText());
+		if (!keyFile.isFile()) {
+			resultMessage.setText(encrypt ? "Fail to read public key file." : "Fail to read private key file.");
+			return;
 		}
+		RadioButton selectedRadioButton = (RadioButton) (encrypt ? publicKeyFormat : privateKeyFormat)
+				.getSelectedToggle();
+		boolean pem = selectedRadioButton.getText().startsWith("PEM");
+		int keySize = this.keySize;
+		Path outputDirectory = this.outputDirectory;
+		List<Path> sources = new ArrayList<>();
+		Task<Key> keyTask = new Task<Key>() {
+			@Override
+			protected Key call() throws Exception {
+				for (File file : files)
+					if (file.isFile())
+						sources.add(file.toPath());
+				return encrypt ? utilityCache.publicKey(keyFile.toPath(), pem, keySize)
+						: utilityCache.privateKey(keyFile.toPath(), pem, keySize);
+			}
+		};
+		keyTask.setOnSucceeded(e -> {
+			int rejected = 0;
+			for (Path source : sources)
+				if (!fileQueue.add(new FileJob(source, targetFor(source, encrypt, outputDirectory), encrypt,
+						keyTask.getValue())))
+					rejected++;
+			resultMessage.setText(rejected == 0 ? "" : rejected + " files rejected, the file queue is full.");
+		});
+		keyTask.setOnFailed(e -> resultMessage.setText(keyTask.getException().getMessage()));
+		cryptoExecutor.execute(keyTask);
+	}
+
+	/**
+	 * 加密時附加.enc；解密時去掉.enc，沒有.enc時附加.dec
+	 */
+	private static Path targetFor(Path source, boolean encrypt, Path outputDirectory) {
+		String name = source.getFileName().toString();
+		if (encrypt)
+			name += ENCRYPTED_SUFFIX;
+		else if (name.endsWith(ENCRYPTED_SUFFIX) && name.length() > ENCRYPTED_SUFFIX.length())
+			name = name.substring(0, name.length() - ENCRYPTED_SUFFIX.length());
+		else
+			name += DECRYPTED_SUFFIX;
+		return (outputDirectory == null ? source.toAbsolutePath().getParent() : outputDirectory).resolve(name);
 	}
 
 	@FXML
@@ -0,0 +1,136 @@
+package application;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Locale;
+
+import javafx.concurrent.Task;
+import utility.EncryptionUtil;
+
+/**
+ * 檔案模式中單一檔案的加密或解密工作<p>
+ * 以分段信封的串流模式直接由檔案讀入、寫出至檔案，內容不經過TextArea，記憶體用量與檔案大小無關。
+ * 輸出先寫入.partial暫存檔，完成後才更名；失敗或取消時刪除暫存檔。
+ * 進度依已讀取的byte數更新，訊息為即時的吞吐量。
+ *
+ * @author EnixLin
+ *
+ */
+final class FileJob extends Task<Void> {
+
+	/** 吞吐量訊息的更新間隔 */
+	private static final long MESSAGE_INTERVAL_NANOS = 200_000_000L;
+	private static final String PARTIAL_SUFFIX = ".partial";
+
+	private final Path source;
+	private final Path target;
+	private final boolean encrypt;
+	private final Key key;
+
+	/**
+	 * @param encrypt true為以公鑰加密，false為以私鑰解密
+	 * @param key     加密時為公鑰，解密時為私鑰
+	 */
+	FileJob(Path source, Path target, boolean encrypt, Key key) {
+		this.source = source;
+		this.target = target;
+		this.encrypt = encrypt;
+		this.key = key;
+		updateTitle(source.getFileName().toString());
+		updateMessage("Waiting");
+		updateProgress(0, 1);
+	}
+
+	Path getTarget() {
+		return target;
+	}
+
+	@Override
+	protected Void call() throws Exception {
+		long size = Files.size(source);
+		if (Files.exists(target))
+			throw new FileAlreadyExistsException(target.getFileName() + " already exists.");
+		EncryptionUtil encryptionUtil = encrypt ? new EncryptionUtil.Builder().setPublicKey((PublicKey) key).build()
+				: new EncryptionUtil.Builder().setPrivateKey((PrivateKey) key).build();
+		Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+		long start = System.nanoTime();
+		try (InputStream input = new ProgressInputStream(Files.newInputStream(source), size, start);
+				OutputStream output = Files.newOutputStream(partial)) {
+			if (encrypt)
+				encryptionUtil.encryptByPublicKey(input, output);
+			else
+				encryptionUtil.decryptByPrivateKey(input, output);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(partial);
+			if (isCancelled())
+				return null;
+			throw e;
+		}
+		try {
+			Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(partial, target);
+		}
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		updateProgress(size, size);
+		updateMessage(String.format(Locale.ROOT, "Done, %.1f MiB in %.1f s (%.1f MiB/s)", megabytes(size), seconds,
+				megabytes(size) / seconds));
+		return null;
+	}
+
+	private static double megabytes(long bytes) {
+		return bytes / (1024.0 * 1024.0);
+	}
+
+	/**
+	 * 讀取時回報進度與吞吐量，工作被取消時中斷讀取
+	 */
+	private final class ProgressInputStream extends FilterInputStream {
+
+		private final long size;
+		private final long start;
+		private long read;
+		private long lastMessage;
+
+		ProgressInputStream(InputStream in, long size, long start) {
+			super(in);
+			this.size = size;
+			this.start = start;
+			this.lastMessage = start;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (isCancelled())
+				throw new InterruptedIOException("Cancelled.");
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				read += n;
+				updateProgress(read, Math.max(size, read));
+				long now = System.nanoTime();
+				if (now - lastMessage >= MESSAGE_INTERVAL_NANOS) {
+					lastMessage = now;
+					updateMessage(String.format(Locale.ROOT, "%.1f MiB/s", megabytes(read) / ((now - start) / 1e9)));
+				}
+			}
+			return n;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package application;
+
+import javafx.beans.binding.Bindings;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+/**
+ * 檔案清單中的一列，顯示檔名、進度與狀態(吞吐量、錯誤訊息)
+ *
+ * @author EnixLin
+ *
+ */
+final class FileJobCell extends ListCell<FileJob> {
+
+	private final Label name = new Label();
+	private final ProgressBar progress = new ProgressBar();
+	private final Label status = new Label();
+	private final HBox row = new HBox(8, name, progress, status);
+
+	FileJobCell() {
+		name.setPrefWidth(170);
+		name.setMinWidth(170);
+		progress.setPrefWidth(90);
+		progress.setMinWidth(90);
+		HBox.setHgrow(status, Priority.ALWAYS);
+		row.setAlignment(Pos.CENTER_LEFT);
+	}
+
+	@Override
+	protected void updateItem(FileJob job, boolean empty) {
+		super.updateItem(job, empty);
+		name.textProperty().unbind();
+		progress.progressProperty().unbind();
+		status.textProperty().unbind();
+		if (empty || job == null) {
+			setGraphic(null);
+			return;
+		}
+		name.textProperty().bind(job.titleProperty());
+		progress.progressProperty().bind(job.progressProperty());
+		status.textProperty().bind(Bindings.createStringBinding(() -> statusOf(job), job.stateProperty(),
+				job.messageProperty(), job.exceptionProperty()));
+		setGraphic(row);
+	}
+
+	private static String statusOf(FileJob job) {
+		switch (job.getState()) {
+		case CANCELLED:
+			return "Cancelled";
+		case FAILED:
+			return job.getException() == null ? "Failed" : "Failed: " + job.getException().getMessage();
+		default:
+			return job.getMessage();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package application;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.WorkerStateEvent;
+
+/**
+ * 檔案模式的工作佇列<p>
+ * 同時執行的檔案數以工作執行緒數為上限，其餘在佇列中等候，前一個完成後才交給執行緒池，
+ * 一次拖入大量檔案時不會同時開啟所有檔案；等候中的工作數亦有上限。
+ * 只可在JavaFX Application Thread使用。
+ *
+ * @author EnixLin
+ *
+ */
+final class FileQueue {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final ObservableList<FileJob> jobs = FXCollections.observableArrayList();
+	private final Deque<FileJob> waiting = new ArrayDeque<>();
+	private final Set<FileJob> running = new HashSet<>();
+	private final ExecutorService executor;
+	private final int workers;
+	private final int capacity;
+
+	/**
+	 * @param workers  同時處理的檔案數
+	 * @param capacity 等候中的工作數上限
+	 */
+	FileQueue(int workers, int capacity) {
+		this.workers = workers;
+		this.capacity = capacity;
+		this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+			Thread thread = new Thread(runnable, "RSAminiTool-file-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** 顯示於清單的所有工作，包含已完成的 */
+	ObservableList<FileJob> getJobs() {
+		return jobs;
+	}
+
+	/**
+	 * 加入工作，有空閒的執行緒時立即開始
+	 *
+	 * @return 佇列已滿時為false，工作不會加入
+	 */
+	boolean add(FileJob job) {
+		if (waiting.size() >= capacity)
+			return false;
+		job.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, e -> finished(job));
+		job.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, e -> finished(job));
+		job.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, e -> finished(job));
+		jobs.add(job);
+		waiting.add(job);
+		submitWaiting();
+		return true;
+	}
+
+	/** 取消所有等候中與執行中的工作 */
+	void cancelAll() {
+		for (FileJob job : jobs)
+			if (!job.isDone())
+				job.cancel();
+	}
+
+	/** 自清單移除已結束的工作 */
+	void clearFinished() {
+		jobs.removeIf(FileJob::isDone);
+	}
+
+	private void finished(FileJob job) {
+		waiting.remove(job);
+		if (running.remove(job))
+			submitWaiting();
+	}
+
+	private void submitWaiting() {
+		while (running.size() < workers && !waiting.isEmpty()) {
+			FileJob job = waiting.poll();
+			running.add(job);
+			executor.execute(job);
+		}
+	}
+}
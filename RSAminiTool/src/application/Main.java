@@ -1,10 +1,12 @@
 package application;
 	
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import utility.CryptoWarmUp;
 
 
 public class Main extends Application {
@@ -15,7 +17,19 @@ public class Main extends Application {
 			primaryStage.setTitle("RSA 加解密小工具");
 			primaryStage.setResizable(false);
 			primaryStage.setScene(new Scene(root));
+			if (StartupTiming.ENABLED) {
+				// 第一次pulse即畫出第一個畫面
+				new AnimationTimer() {
+					@Override
+					public void handle(long now) {
+						StartupTiming.mark("first frame");
+						stop();
+					}
+				}.start();
+			}
 			primaryStage.show();	
+			// 畫面顯示後才於背景預熱，使用者選擇金鑰時完成，第一次加解密不需等待載入
+			CryptoWarmUp.start();
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,37 @@
+package application;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 量測啟動時間，以 -Drsaminitool.startupTiming=true 開啟<p>
+ * 各里程碑(第一個畫面、第一次加密)只輸出一次，時間自JVM啟動起算，例如：
+ * <pre>
+ * [startup] first frame: 612 ms
+ * [startup] first encryption: 2380 ms
+ * </pre>
+ *
+ * @author EnixLin
+ *
+ */
+final class StartupTiming {
+
+	static final boolean ENABLED = Boolean.getBoolean("rsaminitool.startupTiming");
+
+	private static final Set<String> reached = new HashSet<>();
+
+	private StartupTiming() {
+	}
+
+	/**
+	 * 第一次到達此里程碑時輸出自JVM啟動後經過的時間
+	 */
+	static synchronized void mark(String milestone) {
+		if (!ENABLED || !reached.add(milestone))
+			return;
+		ProcessHandle.current().info().startInstant().ifPresent(start -> System.out.println(
+				"[startup] " + milestone + ": " + Duration.between(start, Instant.now()).toMillis() + " ms"));
+	}
+}
@@ -0,0 +1,112 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import utility.EncryptionUtil;
+import utility.RSAKeyUtil;
+
+/**
+ * 保留最近一次讀取的公鑰與私鑰，以及用它們建立的EncryptionUtil<p>
+ * 以(檔案位置, 格式, 修改時間, 檔案大小, 金鑰長度)判斷是否相同，重複按下加解密時只需執行加解密本身；
+ * 金鑰檔被替換或修改時重新讀取。只由Controller的背景執行緒使用，非執行緒安全。
+ *
+ * @author EnixLin
+ *
+ */
+final class UtilityCache {
+
+	private final RSAKeyUtil keyUtil;
+	private Entry encryptionEntry, decryptionEntry;
+
+	UtilityCache(RSAKeyUtil keyUtil) {
+		this.keyUtil = keyUtil;
+	}
+
+	/**
+	 * 取得以公鑰建立的加密工具，金鑰檔未變動時直接沿用
+	 *
+	 * @param pem true為PEM格式，false為DER格式
+	 */
+	EncryptionUtil forEncryption(Path path, boolean pem, int keySize) throws IOException {
+		return encryptionEntry(path, pem, keySize).encryptionUtil;
+	}
+
+	/**
+	 * 取得以私鑰建立的解密工具，金鑰檔未變動時直接沿用
+	 *
+	 * @param pem true為PEM格式，false為DER格式
+	 */
+	EncryptionUtil forDecryption(Path path, boolean pem, int keySize) throws IOException {
+		return decryptionEntry(path, pem, keySize).encryptionUtil;
+	}
+
+	/**
+	 * 取得公鑰，供檔案模式的各工作執行緒各自建立EncryptionUtil
+	 */
+	PublicKey publicKey(Path path, boolean pem, int keySize) throws IOException {
+		return (PublicKey) encryptionEntry(path, pem, keySize).key;
+	}
+
+	/**
+	 * 取得私鑰，供檔案模式的各工作執行緒各自建立EncryptionUtil
+	 */
+	PrivateKey privateKey(Path path, boolean pem, int keySize) throws IOException {
+		return (PrivateKey) decryptionEntry(path, pem, keySize).key;
+	}
+
+	private Entry encryptionEntry(Path path, boolean pem, int keySize) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		if (encryptionEntry == null || !encryptionEntry.matches(path, pem, attributes, keySize)) {
+			PublicKey publicKey = pem ? keyUtil.readPEMPublicKey(path) : keyUtil.readDERPublicKey(path);
+			EncryptionUtil encryptionUtil = new EncryptionUtil.Builder().setAlgorithm("RSA").setKeySize(keySize)
+					.setPublicKey(publicKey).build();
+			encryptionEntry = new Entry(path, pem, attributes, keySize, publicKey, encryptionUtil);
+		}
+		return encryptionEntry;
+	}
+
+	private Entry decryptionEntry(Path path, boolean pem, int keySize) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		if (decryptionEntry == null || !decryptionEntry.matches(path, pem, attributes, keySize)) {
+			PrivateKey privateKey = pem ? keyUtil.readPEMPrivateKey(path) : keyUtil.readDERPrivateKey(path);
+			EncryptionUtil encryptionUtil = new EncryptionUtil.Builder().setAlgorithm("RSA").setKeySize(keySize)
+					.setPrivateKey(privateKey).build();
+			decryptionEntry = new Entry(path, pem, attributes, keySize, privateKey, encryptionUtil);
+		}
+		return decryptionEntry;
+	}
+
+	private static final class Entry {
+
+		final Path path;
+		final boolean pem;
+		final FileTime lastModified;
+		final long size;
+		final int keySize;
+		final Key key;
+		final EncryptionUtil encryptionUtil;
+
+		Entry(Path path, boolean pem, BasicFileAttributes attributes, int keySize, Key key,
+				EncryptionUtil encryptionUtil) {
+			this.path = path;
+			this.pem = pem;
+			this.lastModified = attributes.lastModifiedTime();
+			this.size = attributes.size();
+			this.keySize = keySize;
+			this.key = key;
+			this.encryptionUtil = encryptionUtil;
+		}
+
+		boolean matches(Path path, boolean pem, BasicFileAttributes attributes, int keySize) {
+			return this.path.equals(path) && this.pem == pem && lastModified.equals(attributes.lastModifiedTime())
+					&& size == attributes.size() && this.keySize == keySize;
+		}
+	}
+}
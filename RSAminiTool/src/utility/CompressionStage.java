@@ -0,0 +1,236 @@
+package utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.ZipException;
+
+/**
+ * 信封與串流模式加密前的壓縮步驟<p>
+ * 壓縮編號記錄於信封表頭flags的低4位元，0為未壓縮。是否壓縮以取樣判斷：
+ * 短於門檻的資料不壓縮；較長的資料先取開頭、中間與結尾各一段試壓縮，壓縮率不佳(例如已壓縮的檔案)時
+ * 直接加密，不浪費時間壓縮全部；串流模式只能取開頭一段判斷。
+ *
+ * @author EnixLin
+ *
+ */
+final class CompressionStage {
+
+	/** 表頭旗標中記錄壓縮編號的位元 */
+	static final int CODEC_MASK = 0x0F;
+	/** 預設的壓縮門檻，短於此長度不壓縮 */
+	static final int DEFAULT_THRESHOLD = 512;
+
+	/** 每段取樣的長度 */
+	private static final int SAMPLE_LENGTH = 2048;
+	private static final int SAMPLE_COUNT = 3;
+	/** 取樣壓縮後須小於原長度的此比例才壓縮 */
+	private static final double MAX_SAMPLE_RATIO = 0.9;
+
+	private CompressionStage() {
+	}
+
+	/**
+	 * 取樣判斷後壓縮整個陣列
+	 *
+	 * @param codec 為null時不壓縮
+	 * @return 壓縮後的內容；不值得壓縮或壓縮後未變小時為null
+	 */
+	static byte[] compress(CompressionCodec codec, byte[] data, int threshold) throws IOException {
+		if (codec == null || data.length < threshold)
+			return null;
+		if (data.length > SAMPLE_LENGTH * SAMPLE_COUNT) {
+			long compressedLength = 0;
+			for (int i = 0; i < SAMPLE_COUNT; i++) {
+				int offset = (int) ((long) (data.length - SAMPLE_LENGTH) * i / (SAMPLE_COUNT - 1));
+				compressedLength += codec.compress(data, offset, SAMPLE_LENGTH).length;
+			}
+			if (compressedLength >= SAMPLE_LENGTH * SAMPLE_COUNT * MAX_SAMPLE_RATIO)
+				return null;
+		}
+		byte[] compressed = codec.compress(data, 0, data.length);
+		return compressed.length < data.length ? compressed : null;
+	}
+
+	/**
+	 * 依表頭旗標解壓縮，未壓縮時直接回傳
+	 */
+	static byte[] decompress(int flags, CompressionCodec configured, byte[] data) throws IOException {
+		CompressionCodec codec = codecFor(flags, configured);
+		return codec == null ? data : codec.decompress(data, 0, data.length);
+	}
+
+	/**
+	 * 依表頭旗標找出解壓縮用的codec，可為內建的Deflate或設定的codec
+	 *
+	 * @return 未壓縮時為null
+	 */
+	static CompressionCodec codecFor(int flags, CompressionCodec configured) throws IOException {
+		int id = flags & CODEC_MASK;
+		if (id == 0)
+			return null;
+		if (configured != null && configured.getId() == id)
+			return configured;
+		if (id == DeflateCodec.ID)
+			return DeflateCodec.DEFAULT;
+		throw new ZipException("Unknown compression codec " + id + ".");
+	}
+
+	static void checkId(CompressionCodec codec) {
+		if (codec != null && (codec.getId() < 1 || codec.getId() > CompressionCodec.MAX_ID))
+			throw new IllegalArgumentException(
+					"Compression codec id must be between 1 and " + CompressionCodec.MAX_ID + ".");
+	}
+
+	/**
+	 * 串流加密的來源，先讀入開頭取樣決定是否壓縮，讀取過的資料不會遺失
+	 *
+	 * @param codec 為null時不壓縮
+	 */
+	static Source openSource(CompressionCodec codec, ReadableByteChannel input, int threshold) throws IOException {
+		if (codec == null)
+			return new Source(0, input, null, null);
+		ByteBuffer sample = ByteBuffer.allocate(Math.max(threshold, SAMPLE_LENGTH * SAMPLE_COUNT));
+		SegmentedEnvelope.readFully(input, sample);
+		int sampleLength = sample.position();
+		InputStream plain = new SequenceInputStream(new ByteArrayInputStream(sample.array(), 0, sampleLength),
+				Channels.newInputStream(input));
+		if (sampleLength < threshold || codec.compress(sample.array(), 0,
+				sampleLength).length >= sampleLength * MAX_SAMPLE_RATIO)
+			return new Source(0, Channels.newChannel(plain), null, null);
+		CountingInputStream counting = new CountingInputStream(plain);
+		InputStream compressing = codec.compressing(counting);
+		return new Source(codec.getId(), Channels.newChannel(compressing), compressing, counting);
+	}
+
+	/**
+	 * 串流解密的輸出，依表頭旗標將解密後的內容解壓縮後寫至output
+	 */
+	static Sink openSink(int flags, CompressionCodec configured, WritableByteChannel output) throws IOException {
+		CompressionCodec codec = codecFor(flags, configured);
+		if (codec == null)
+			return new Sink(output, null, null);
+		CountingOutputStream counting = new CountingOutputStream(Channels.newOutputStream(output));
+		OutputStream decompressing = codec.decompressing(counting);
+		return new Sink(Channels.newChannel(decompressing), decompressing, counting);
+	}
+
+	static final class Source implements Closeable {
+
+		/** 寫入表頭的旗標，未壓縮時為0 */
+		final int flags;
+		/** 加密時讀取的通道，壓縮時為壓縮後的內容 */
+		final ReadableByteChannel channel;
+		private final InputStream compressing;
+		private final CountingInputStream plain;
+
+		private Source(int flags, ReadableByteChannel channel, InputStream compressing, CountingInputStream plain) {
+			this.flags = flags;
+			this.channel = channel;
+			this.compressing = compressing;
+			this.plain = plain;
+		}
+
+		/**
+		 * 讀入的明文長度
+		 *
+		 * @param sealedPlainLength 加密的資料長度，未壓縮時即為明文長度
+		 */
+		long plainLength(long sealedPlainLength) {
+			return plain == null ? sealedPlainLength : plain.count;
+		}
+
+		/** 釋放壓縮用的資源，不關閉原來的通道 */
+		@Override
+		public void close() throws IOException {
+			if (compressing != null)
+				compressing.close();
+		}
+	}
+
+	static final class Sink implements Closeable {
+
+		/** 解密後寫入的通道，壓縮時會先解壓縮 */
+		final WritableByteChannel channel;
+		private final OutputStream decompressing;
+		private final CountingOutputStream plain;
+
+		private Sink(WritableByteChannel channel, OutputStream decompressing, CountingOutputStream plain) {
+			this.channel = channel;
+			this.decompressing = decompressing;
+			this.plain = plain;
+		}
+
+		/**
+		 * 寫出解壓縮剩餘的資料，並取得寫出的明文長度
+		 *
+		 * @param openedLength 解密後的資料長度，未壓縮時即為明文長度
+		 */
+		long finish(long openedLength) throws IOException {
+			close();
+			return plain == null ? openedLength : plain.count;
+		}
+
+		/** 寫出剩餘的資料並釋放資源，不關閉原來的通道 */
+		@Override
+		public void close() throws IOException {
+			if (decompressing != null)
+				decompressing.close();
+		}
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+
+		long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0)
+				count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0)
+				count += n;
+			return n;
+		}
+	}
+
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 加解密、簽章與驗證操作的JFR事件，於Flight Recorder中可與GC、safepoint對照<p>
+ * 預設只記錄超過1毫秒的操作，錄製未開啟或未超過門檻時幾乎沒有成本，可常態保留。<br>
+ * Flight Recorder未啟動時不建立JFR事件：第一次初始化jdk.jfr.Event的子類別需數百毫秒，
+ * 會拖慢第一次加解密；之後才開始錄製時，由下一次操作起記錄。
+ *
+ * @author EnixLin
+ *
+ */
+final class CryptoEvent {
+
+	static final String NAME = "encryption.CryptoOperation";
+
+	/** 輸入大小，事先不知道時為-1 */
+	long inputSize;
+	/** 輸出大小，未知時為-1 */
+	long outputSize;
+	/** 錄製中的JFR事件，Flight Recorder未啟動時為null */
+	private final Recorded recorded;
+
+	private CryptoEvent(long inputSize, Recorded recorded) {
+		this.inputSize = inputSize;
+		this.outputSize = -1;
+		this.recorded = recorded;
+	}
+
+	/**
+	 * 建立並開始計時
+	 *
+	 * @param inputSize 輸入大小，事先不知道時為-1
+	 */
+	static CryptoEvent start(long inputSize) {
+		Recorded recorded = null;
+		if (FlightRecorder.isInitialized()) {
+			recorded = new Recorded();
+			recorded.begin();
+		}
+		return new CryptoEvent(inputSize, recorded);
+	}
+
+	/**
+	 * 結束計時，超過門檻時寫入錄製
+	 */
+	void finish(String utility, CryptoMetrics.Operation operation, int keySize, boolean success) {
+		if (recorded == null)
+			return;
+		recorded.end();
+		if (recorded.shouldCommit()) {
+			recorded.utility = utility;
+			recorded.operation = operation.name();
+			recorded.keySize = keySize;
+			recorded.inputSize = inputSize;
+			recorded.outputSize = outputSize;
+			recorded.success = success;
+			recorded.commit();
+		}
+	}
+
+	@Name(CryptoEvent.NAME)
+	@Label("Crypto Operation")
+	@Category({ "Encryption" })
+	@Description("Encryption, decryption, signing or verification performed by the utilities of this package")
+	@Threshold("1 ms")
+	@StackTrace(false)
+	static final class Recorded extends Event {
+
+		@Label("Operation")
+		String operation;
+
+		@Label("Utility")
+		String utility;
+
+		@Label("Key Size")
+		int keySize;
+
+		@Label("Input Size")
+		@DataAmount
+		long inputSize;
+
+		@Label("Output Size")
+		@DataAmount
+		long outputSize;
+
+		@Label("Success")
+		boolean success;
+	}
+}
@@ -0,0 +1,30 @@
+package utility;
+
+import java.util.Map;
+
+/**
+ * {@link CryptoMetrics}於JMX公開的介面，名稱格式為 操作/金鑰長度/結果，例如 DECRYPT/2048/failure
+ *
+ * @author EnixLin
+ *
+ */
+public interface CryptoMetricsMXBean {
+
+	/** 所有操作的累計次數 */
+	long getOperationCount();
+
+	/** 所有操作的累計失敗次數 */
+	long getFailureCount();
+
+	/** 各項的累計次數 */
+	Map<String, Long> getCounts();
+
+	/** 各項的平均延遲(毫秒) */
+	Map<String, Double> getMeanMillis();
+
+	/** 各項的p99延遲(毫秒) */
+	Map<String, Double> getP99Millis();
+
+	/** 將所有數據歸零 */
+	void reset();
+}
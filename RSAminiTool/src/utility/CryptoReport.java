@@ -0,0 +1,50 @@
+package utility;
+
+/**
+ * 一次檔案加解密的處理結果，包含資料量與耗時，可換算為傳輸量
+ *
+ * @author EnixLin
+ *
+ */
+public class CryptoReport {
+
+	private final long inputBytes;
+	private final long outputBytes;
+	private final long elapsedNanos;
+
+	CryptoReport(long inputBytes, long outputBytes, long elapsedNanos) {
+		this.inputBytes = inputBytes;
+		this.outputBytes = outputBytes;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/** 讀入的資料量(byte) */
+	public long getInputBytes() {
+		return inputBytes;
+	}
+
+	/** 寫出的資料量(byte) */
+	public long getOutputBytes() {
+		return outputBytes;
+	}
+
+	/** 耗時(奈秒) */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * 以讀入的資料量計算每秒處理的MiB數(1024*1024 bytes)
+	 */
+	public double getMegabytesPerSecond() {
+		if (elapsedNanos <= 0)
+			return 0;
+		return inputBytes / (1024.0 * 1024.0) / (elapsedNanos / 1_000_000_000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d bytes -> %d bytes in %.1f ms (%.1f MiB/s)", inputBytes, outputBytes,
+				elapsedNanos / 1_000_000.0, getMegabytesPerSecond());
+	}
+}
@@ -0,0 +1,117 @@
+package utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 預先載入加密提供者，並重複執行常用的路徑讓JIT編譯，縮短第一次讀取金鑰與加解密的等待<p>
+ * 以臨時產生的RSA金鑰執行PEM解析、字串加解密、信封與串流加解密，不讀寫任何檔案，也不影響其他工具的狀態。
+ * 適合於程式啟動、畫面顯示之後於背景呼叫；不呼叫時一切照常，只是第一次操作較慢。
+ *
+ * <pre>
+ * CryptoWarmUp.start(); // 不需等待結果
+ * </pre>
+ *
+ * @author EnixLin
+ *
+ */
+public final class CryptoWarmUp {
+
+	/** 預設的重複次數 */
+	public static final int DEFAULT_ITERATIONS = 10;
+
+	private static final int KEY_SIZE = 1024;
+	private static final int ENVELOPE_LENGTH = 4 * 1024;
+	private static final int STREAM_LENGTH = 64 * 1024;
+	private static final String MESSAGE = "warm up";
+
+	private CryptoWarmUp() {
+	}
+
+	/**
+	 * 以預設的重複次數於背景預熱
+	 *
+	 * @see #start(int)
+	 */
+	public static CompletableFuture<Void> start() {
+		return start(DEFAULT_ITERATIONS);
+	}
+
+	/**
+	 * 於低優先權的daemon執行緒預熱，不阻擋呼叫者
+	 *
+	 * @param iterations 每條路徑重複的次數
+	 * @return 預熱完成時結束；失敗時以例外結束，不影響之後的操作
+	 */
+	public static CompletableFuture<Void> start(int iterations) {
+		checkIterations(iterations);
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Thread thread = new Thread(() -> {
+			try {
+				run(iterations);
+				future.complete(null);
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}, "crypto-warm-up");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return future;
+	}
+
+	/**
+	 * 於目前的執行緒預熱，完成後才返回
+	 *
+	 * @param iterations 每條路徑重複的次數
+	 */
+	public static void run(int iterations) {
+		checkIterations(iterations);
+		KeyPair keyPair = new RSAKeyUtil.Builder().setKeySize(KEY_SIZE).build().generateKeyPair();
+		byte[] publicPem = pem(PemParser.PUBLIC_KEY, keyPair.getPublic().getEncoded());
+		byte[] privatePem = pem(PemParser.PRIVATE_KEY, keyPair.getPrivate().getEncoded());
+		byte[] envelopePlain = new byte[ENVELOPE_LENGTH];
+		byte[] streamPlain = new byte[STREAM_LENGTH];
+		try {
+			KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+			for (int i = 0; i < iterations; i++) {
+				// 與RSAKeyUtil讀取PEM金鑰相同的解析與轉換
+				keyFactory.generatePublic(new X509EncodedKeySpec(PemParser
+						.first(PemParser.parse(ByteBuffer.wrap(publicPem)), PemParser.PUBLIC_KEY).der));
+				keyFactory.generatePrivate(new PKCS8EncodedKeySpec(PemParser
+						.first(PemParser.parse(ByteBuffer.wrap(privatePem)), PemParser.PRIVATE_KEY).der));
+
+				EncryptionUtil encryptionUtil = new EncryptionUtil.Builder().setPublicKey(keyPair.getPublic())
+						.setPrivateKey(keyPair.getPrivate()).build();
+				encryptionUtil.decryptInStringByPrivateKey(encryptionUtil.encryptInStringByPublicKey(MESSAGE));
+				encryptionUtil.decryptEnvelopeByPrivateKey(encryptionUtil.encryptInEnvelopeBytesByPublicKey(envelopePlain));
+
+				ByteArrayOutputStream sealed = new ByteArrayOutputStream(STREAM_LENGTH + 1024);
+				encryptionUtil.encryptByPublicKey(new ByteArrayInputStream(streamPlain), sealed);
+				encryptionUtil.decryptByPrivateKey(new ByteArrayInputStream(sealed.toByteArray()),
+						new ByteArrayOutputStream(STREAM_LENGTH));
+			}
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Warm-up failure. " + e.getMessage());
+		}
+	}
+
+	private static byte[] pem(String type, byte[] der) {
+		return ("-----BEGIN " + type + "-----\n" + Base64.getMimeEncoder().encodeToString(der) + "\n-----END " + type
+				+ "-----\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static void checkIterations(int iterations) {
+		if (iterations < 1)
+			throw new IllegalArgumentException("Iterations must be positive.");
+	}
+}
@@ -1,34 +1,78 @@
 package utility;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.util.Base64;
-import java.util.Base64.Decoder;
-import java.util.Base64.Encoder;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
- * 針對加解密操作的工具類別，需置入相應的key
+ * 針對加解密操作的工具類別，需置入相應的key<p>
+ * 使用EC或X25519/X448金鑰時，信封、串流、檔案與平行模式改以ECIES方式包裝AES金鑰，
+ * 此時不支援RSA直接加解密。<br>
+ * RSA的Cipher與SecureRandom於第一次加解密時才建立，建立工具本身只需計算金鑰指紋；
+ * 金鑰與演算法不相符時，於第一次加解密時才拋出例外。
  * 
  * @author EnixLin
  *
  */
 public class EncryptionUtil {
 
+	/** 檔案模式先寫入的暫存檔副檔名，完成後才更名為目標檔名 */
+	private static final String PARTIAL_SUFFIX = ".partial";
+
 	private String algorithm;
 	private int keySize;
 	private PrivateKey privateKey;
 	private PublicKey publicKey;
+	/** RSA直接加解密與包裝AES金鑰用的Cipher，首次使用時建立 */
 	private Cipher decryptionCipher, encryptionCipher;
-	private Decoder decoder;
-	private Encoder encoder;
+	/** 金鑰為EC或XDH時，以金鑰交換包裝信封的AES金鑰，RSA時為null */
+	private EciesKeyWrap eciesKeyWrap;
+	/** 信封加密用的AES/GCM Cipher，首次使用時建立 */
+	private Cipher contentCipher;
+	/** 產生AES金鑰與nonce用，首次使用時建立 */
+	private SecureRandom random;
+	private int segmentSize;
+	/** 平行模式使用的執行緒數量，相同數量的EncryptionUtil共用同一個ForkJoinPool */
+	private int parallelism;
+	/** 密文字串的Base64格式 */
+	private Base64Flavor base64Flavor;
+	/** 信封與串流模式加密前的壓縮方式，未設定時不壓縮 */
+	private CompressionCodec compressionCodec;
+	private int compressionThreshold;
+	/** 字串加解密時重複使用的暫存區，依需要加大 */
+	private byte[] cipherScratch, plainScratch, textScratch;
+	/** 是否在密文前附上金鑰標籤，指紋於build時由金鑰算出 */
+	private boolean keyTagging;
+	private long keyFingerprint;
+	/** 統計數據，未設定時不記錄；各操作的計時器以Operation的順序排列 */
+	private CryptoMetrics metrics;
+	private OperationTimer[] timers;
+	private int actualKeySize;
 
 	/**
 	 * 預設值使用RSA，長度2048
@@ -36,8 +80,10 @@ public class EncryptionUtil {
 	private EncryptionUtil() {
 		this.algorithm = "RSA";
 		this.keySize = 2048;
-		decoder = Base64.getMimeDecoder();
-		encoder = Base64.getMimeEncoder();
+		this.segmentSize = SegmentedEnvelope.DEFAULT_SEGMENT_SIZE;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.compressionThreshold = CompressionStage.DEFAULT_THRESHOLD;
+		base64Flavor = Base64Flavor.MIME;
 	};
 
 	public String getAlgorithm() {
@@ -56,6 +102,41 @@ public class EncryptionUtil {
 		return publicKey;
 	}
 
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public boolean isKeyTagging() {
+		return keyTagging;
+	}
+
+	/**
+	 * 目前金鑰的指紋，未設定金鑰時為0
+	 */
+	public long getKeyFingerprint() {
+		return keyFingerprint;
+	}
+
+	public CryptoMetrics getMetrics() {
+		return metrics;
+	}
+
+	public Base64Flavor getBase64Flavor() {
+		return base64Flavor;
+	}
+
+	public CompressionCodec getCompressionCodec() {
+		return compressionCodec;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
 	public static class Builder {
 
 		/** 預設數值 */
@@ -83,21 +164,89 @@ public class EncryptionUtil {
 			return this;
 		}
 
+		/** 串流加密時每個分段的明文大小，預設64KB，上限8MB */
+		public Builder setSegmentSize(int segmentSize) {
+			if (segmentSize <= 0 || segmentSize > SegmentedEnvelope.MAX_SEGMENT_SIZE)
+				throw new IllegalArgumentException(
+						"Segment size must be between 1 and " + SegmentedEnvelope.MAX_SEGMENT_SIZE + ".");
+			keyReaderUtil.segmentSize = segmentSize;
+			return this;
+		}
+
+		/** 平行模式使用的執行緒數量，預設為CPU核心數 */
+		public Builder setParallelism(int parallelism) {
+			if (parallelism <= 0)
+				throw new IllegalArgumentException("Parallelism must be positive.");
+			keyReaderUtil.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * 在RSA直接加密與信封模式的密文前附上公鑰指紋({@link KeyTag}格式)，預設不附加<br>
+		 * 解密時會先比對指紋，金鑰不符時立即失敗，不必執行RSA運算；
+		 * 也可交由{@link DecryptionRouter}依指紋選擇私鑰。串流、檔案與平行模式不受影響
+		 */
+		public Builder setKeyTagging(boolean keyTagging) {
+			keyReaderUtil.keyTagging = keyTagging;
+			return this;
+		}
+
+		/** 記錄加解密的次數與延遲，預設不記錄 */
+		public Builder setMetrics(CryptoMetrics metrics) {
+			keyReaderUtil.metrics = metrics;
+			return this;
+		}
+
+		/**
+		 * 密文字串的Base64格式，預設為MIME(每76字元換行)<br>
+		 * 其他格式不換行，密文字串較短；解密端須使用相同的格式
+		 */
+		public Builder setBase64Flavor(Base64Flavor base64Flavor) {
+			keyReaderUtil.base64Flavor = base64Flavor;
+			return this;
+		}
+
+		/**
+		 * 信封與串流模式加密前先壓縮，例如{@link DeflateCodec}，預設不壓縮<br>
+		 * 壓縮方式記錄於密文表頭，解密時自動解壓縮；RSA直接加密與檔案模式不壓縮
+		 */
+		public Builder setCompressionCodec(CompressionCodec compressionCodec) {
+			CompressionStage.checkId(compressionCodec);
+			keyReaderUtil.compressionCodec = compressionCodec;
+			return this;
+		}
+
+		/** 短於此長度的資料不壓縮，預設512 bytes；串流模式以開頭讀入的取樣長度判斷 */
+		public Builder setCompressionThreshold(int compressionThreshold) {
+			if (compressionThreshold < 0)
+				throw new IllegalArgumentException("Compression threshold must not be negative.");
+			keyReaderUtil.compressionThreshold = compressionThreshold;
+			return this;
+		}
+
 		public EncryptionUtil build() {
 
-			try {
-				if (keyReaderUtil.privateKey != null) {
-					Cipher decryptionCipher = Cipher.getInstance(keyReaderUtil.algorithm);
-					decryptionCipher.init(Cipher.DECRYPT_MODE, keyReaderUtil.privateKey);
-					keyReaderUtil.decryptionCipher = decryptionCipher;
-				}
-				if (keyReaderUtil.publicKey != null) {
-					Cipher encryptionCipher = Cipher.getInstance(keyReaderUtil.algorithm);
-					encryptionCipher.init(Cipher.ENCRYPT_MODE, keyReaderUtil.publicKey);
-					keyReaderUtil.encryptionCipher = encryptionCipher;
+			Key key = keyReaderUtil.publicKey != null ? keyReaderUtil.publicKey : keyReaderUtil.privateKey;
+			String keyAgreement = key == null ? null : KeyAlgorithms.keyAgreementAlgorithm(key);
+			if (keyAgreement != null) {
+				// EC與XDH金鑰以金鑰交換包裝AES金鑰，不使用RSA Cipher
+				keyReaderUtil.eciesKeyWrap = new EciesKeyWrap(keyAgreement, keyReaderUtil.publicKey,
+						keyReaderUtil.privateKey, keyReaderUtil::getRandom);
+			}
+			if (keyReaderUtil.publicKey != null)
+				keyReaderUtil.keyFingerprint = KeyFingerprint.of(keyReaderUtil.publicKey);
+			else if (keyReaderUtil.privateKey != null && (keyReaderUtil.eciesKeyWrap == null || keyReaderUtil.keyTagging))
+				keyReaderUtil.keyFingerprint = KeyFingerprint.of(keyReaderUtil.privateKey);
+			keyReaderUtil.actualKeySize = CryptoMetrics.keySizeOf(
+					keyReaderUtil.publicKey != null ? keyReaderUtil.publicKey : keyReaderUtil.privateKey,
+					keyReaderUtil.keySize);
+			if (keyReaderUtil.metrics != null) {
+				CryptoMetrics.Operation[] operations = CryptoMetrics.Operation.values();
+				keyReaderUtil.timers = new OperationTimer[operations.length];
+				for (CryptoMetrics.Operation operation : operations) {
+					keyReaderUtil.timers[operation.ordinal()] = keyReaderUtil.metrics
+							.timer(operation, keyReaderUtil.actualKeySize);
 				}
-			} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException e) {
-				throw new RuntimeException("Utility building failure. " + e.getMessage());
 			}
 
 			return keyReaderUtil;
@@ -117,8 +266,8 @@ public class EncryptionUtil {
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
 			byte[] utf8Bytes = originalString.getBytes("UTF-8");
-			return encryptionCipher.doFinal(utf8Bytes);
-		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
+			return doEncrypt(utf8Bytes);
+		} catch (GeneralSecurityException | UnsupportedEncodingException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
 	}
@@ -135,8 +284,8 @@ public class EncryptionUtil {
 		if (publicKey == null)
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
-			return encryptionCipher.doFinal(originalBytes);
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
+			return doEncrypt(originalBytes);
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
 	}
@@ -151,9 +300,9 @@ public class EncryptionUtil {
 		if (publicKey == null)
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
-			byte[] utf8Bytes = originalString.getBytes("UTF-8");
-			return encoder.encodeToString(encryptionCipher.doFinal(utf8Bytes));
-		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
+			byte[] utf8Bytes = originalString.getBytes(StandardCharsets.UTF_8);
+			return encryptToString(utf8Bytes);
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
 	}
@@ -168,8 +317,8 @@ public class EncryptionUtil {
 		if (publicKey == null)
 			throw new RuntimeException("There is no publicKey setted in this utility instance.");
 		try {
-			return encoder.encodeToString(encryptionCipher.doFinal(originalBytes));
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
+			return encryptToString(originalBytes);
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Encryption failure. " + e.getMessage());
 		}
 	}
@@ -184,8 +333,8 @@ public class EncryptionUtil {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return decryptionCipher.doFinal(encryptedBytes);
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
+			return doDecrypt(encryptedBytes);
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
 	}
@@ -200,8 +349,9 @@ public class EncryptionUtil {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return decryptionCipher.doFinal(decoder.decode(encryptedBase64String));
-		} catch (IllegalBlockSizeException | BadPaddingException e) {
+			int length = decryptFromString(encryptedBase64String);
+			return Arrays.copyOf(plainScratch, length);
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
 	}
@@ -216,8 +366,8 @@ public class EncryptionUtil {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return new String(decryptionCipher.doFinal(encryptedBytes), "UTF-8");
-		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
+			return new String(doDecrypt(encryptedBytes), StandardCharsets.UTF_8);
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
 		}
 	}
@@ -232,9 +382,661 @@ public class EncryptionUtil {
 		if (privateKey == null)
 			throw new RuntimeException("There is no privateKey setted in this utility instance.");
 		try {
-			return new String(decryptionCipher.doFinal(decoder.decode(encryptedBase64String)), "UTF-8");
-		} catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException e) {
+			int length = decryptFromString(encryptedBase64String);
+			return new String(plainScratch, 0, length, StandardCharsets.UTF_8);
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 將input剩餘的內容以公鑰加密後寫入output，不配置新的陣列<p>
+	 * 可使用direct buffer，output剩餘空間須至少為{@link #getOutputSize(int)}
+	 * 
+	 * @param input  欲加密的內容，處理後position移至limit
+	 * @param output 加密結果寫入處，處理後position往後移動
+	 * @return 寫入output的byte數
+	 */
+	public int encryptByPublicKey(ByteBuffer input, ByteBuffer output) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(input.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			checkDirectMode();
+			int length = 0;
+			if (keyTagging) {
+				if (output.remaining() < getOutputSize(input.remaining()))
+					throw new ShortBufferException("Output buffer is too small.");
+				KeyTag.write(output, KeyTag.TYPE_RSA, keyFingerprint);
+				length = KeyTag.LENGTH;
+			}
+			length += getEncryptionCipher().doFinal(input, output);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 將input剩餘的內容以私鑰解密後寫入output，不配置新的陣列<p>
+	 * 可使用direct buffer，output剩餘空間須至少為{@link #getOutputSize(int)}
+	 * 
+	 * @param input  欲解密的內容，處理後position移至limit
+	 * @param output 解密結果寫入處，處理後position往後移動
+	 * @return 寫入output的byte數
+	 */
+	public int decryptByPrivateKey(ByteBuffer input, ByteBuffer output) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(input.remaining());
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			checkDirectMode();
+			if (keyTagging)
+				KeyTag.check(input, KeyTag.TYPE_RSA, keyFingerprint);
+			int length = getDecryptionCipher().doFinal(input, output);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} catch (GeneralSecurityException e) {
 			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.DECRYPT, start, success);
 		}
 	}
+
+	/**
+	 * 取得加解密結果所需的最大長度，可用於預先配置重複使用的ByteBuffer
+	 * 
+	 * @param inputLength 輸入長度
+	 * @return 輸出所需的byte數
+	 */
+	public int getOutputSize(int inputLength) {
+		if (eciesKeyWrap != null)
+			throw new RuntimeException("Direct encryption requires an RSA key, please use the envelope methods.");
+		if (publicKey == null && privateKey == null)
+			throw new RuntimeException("There is no key setted in this utility instance.");
+		try {
+			Cipher cipher = publicKey != null ? getEncryptionCipher() : getDecryptionCipher();
+			return cipher.getOutputSize(inputLength) + (keyTagging ? KeyTag.LENGTH : 0);
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Utility building failure. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 以信封模式加密，不受RSA單次加密長度的限制<p>
+	 * 隨機產生AES金鑰以AES-GCM加密內容，再以公鑰包裝此AES金鑰，適用於大量資料；
+	 * 有設定壓縮方式時先壓縮
+	 * 
+	 * @param originalBytes 欲加密之byte陣列
+	 * @return 信封格式的byte陣列
+	 */
+	public byte[] encryptInEnvelopeBytesByPublicKey(byte[] originalBytes) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(originalBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			byte[] contentKey = Envelope.newContentKey(getRandom());
+			byte[] wrappedKey = wrapContentKey(contentKey);
+			byte[] compressed = CompressionStage.compress(compressionCodec, originalBytes, compressionThreshold);
+			int flags = compressed == null ? 0 : compressionCodec.getId();
+			byte[] sealed = Envelope.seal(getContentCipher(), getRandom(), contentKey, wrappedKey, flags,
+					compressed == null ? originalBytes : compressed, keyTagging ? KeyTag.LENGTH : 0);
+			if (keyTagging)
+				KeyTag.write(sealed, KeyTag.TYPE_ENVELOPE, keyFingerprint);
+			event.outputSize = sealed.length;
+			success = true;
+			return sealed;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENVELOPE_ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 將原始字串取得UTF8之byte陣列，以信封模式加密後，再使用Base64轉成字串表示
+	 * 
+	 * @param originalString 欲加密之字串
+	 * @return 加密後的字串
+	 */
+	public String encryptInEnvelopeStringByPublicKey(String originalString) {
+		return base64Flavor.encodeToString(encryptInEnvelopeBytesByPublicKey(originalString.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * 解開信封格式的資料，先以私鑰解開AES金鑰，再解密內容；加密時有壓縮則自動解壓縮
+	 * 
+	 * @param envelopeBytes 信封格式的byte陣列
+	 * @return 解密後的byte陣列
+	 */
+	public byte[] decryptEnvelopeByPrivateKey(byte[] envelopeBytes) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(envelopeBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int offset = 0;
+			if (keyTagging) {
+				KeyTag.check(envelopeBytes, KeyTag.TYPE_ENVELOPE, keyFingerprint);
+				offset = KeyTag.LENGTH;
+			}
+			Envelope.Header header = Envelope.readHeader(envelopeBytes, offset);
+			byte[] contentKey = unwrapContentKey(header.wrappedKey);
+			byte[] plainBytes = CompressionStage.decompress(header.flags, compressionCodec,
+					Envelope.open(getContentCipher(), contentKey, envelopeBytes, header));
+			event.outputSize = plainBytes.length;
+			success = true;
+			return plainBytes;
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENVELOPE_DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 將信封模式加密後的內容(Base64)轉為原始字串(UTF-8)
+	 * 
+	 * @param envelopeBase64String base64的加密字串
+	 * @return 解密後的字串
+	 */
+	public String decryptEnvelopeInStringByPrivateKey(String envelopeBase64String) {
+		return new String(decryptEnvelopeByPrivateKey(base64Flavor.decode(envelopeBase64String)), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 以分段信封模式做串流加密，不論資料大小，記憶體用量固定為兩個分段大小<p>
+	 * 有設定壓縮方式時先壓縮；不會關閉傳入的串流
+	 * 
+	 * @param input  明文來源
+	 * @param output 密文輸出
+	 * @return 已加密的明文長度
+	 */
+	public long encryptByPublicKey(InputStream input, OutputStream output) {
+		return encryptByPublicKey(Channels.newChannel(input), Channels.newChannel(output));
+	}
+
+	/**
+	 * 以分段信封模式做串流加密，不論資料大小，記憶體用量固定為兩個分段大小<p>
+	 * 有設定壓縮方式時先壓縮；不會關閉傳入的通道
+	 * 
+	 * @param input  明文來源
+	 * @param output 密文輸出
+	 * @return 已加密的明文長度
+	 */
+	public long encryptByPublicKey(ReadableByteChannel input, WritableByteChannel output) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		try (CompressionStage.Source source = CompressionStage.openSource(compressionCodec, input,
+				compressionThreshold)) {
+			byte[] contentKey = Envelope.newContentKey(getRandom());
+			SegmentedEnvelope.Header header = SegmentedEnvelope.newHeader(getRandom(), source.flags, segmentSize,
+					wrapContentKey(contentKey));
+			long length = source.plainLength(SegmentedEnvelope.encrypt(getContentCipher(),
+					new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM), header, source.channel, output));
+			event.inputSize = length;
+			success = true;
+			return length;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.STREAM_ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 解密{@link #encryptByPublicKey(InputStream, OutputStream)}產生的串流，記憶體用量固定<p>
+	 * 不會關閉傳入的串流；資料被竄改或截斷時拋出例外，但之前已解密的分段可能已寫出
+	 * 
+	 * @param input  密文來源
+	 * @param output 明文輸出
+	 * @return 解密後的明文長度
+	 */
+	public long decryptByPrivateKey(InputStream input, OutputStream output) {
+		return decryptByPrivateKey(Channels.newChannel(input), Channels.newChannel(output));
+	}
+
+	/**
+	 * 解密{@link #encryptByPublicKey(ReadableByteChannel, WritableByteChannel)}產生的資料，記憶體用量固定<p>
+	 * 不會關閉傳入的通道；資料被竄改或截斷時拋出例外，但之前已解密的分段可能已寫出
+	 * 
+	 * @param input  密文來源
+	 * @param output 明文輸出
+	 * @return 解密後的明文長度
+	 */
+	public long decryptByPrivateKey(ReadableByteChannel input, WritableByteChannel output) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			SegmentedEnvelope.Header header = SegmentedEnvelope.readHeader(input);
+			byte[] contentKey = unwrapContentKey(header.wrappedKey);
+			long length = decryptSegments(new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM), header, input,
+					output);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.STREAM_DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 以記憶體映射方式加密檔案，適用於GB等級的大檔案<p>
+	 * 輸出格式與{@link #encryptByPublicKey(InputStream, OutputStream)}相同，可互相解密。
+	 * 輸出先寫入同目錄的暫存檔(.partial)，完成後才更名為目標檔名，失敗時不影響已存在的目標檔
+	 * 
+	 * @param sourcePath 明文檔案
+	 * @param targetPath 密文輸出位置，已存在時於成功後取代
+	 * @return 處理的資料量與耗時
+	 */
+	public CryptoReport encryptFileByPublicKey(Path sourcePath, Path targetPath) {
+		return encryptFile(sourcePath, targetPath, false);
+	}
+
+	/**
+	 * 以記憶體映射方式解密檔案，與加密相同先寫入暫存檔，解密失敗時刪除暫存檔，不影響已存在的目標檔<br>
+	 * 串流模式壓縮過的檔案改為依序解密並解壓縮
+	 * 
+	 * @param sourcePath 密文檔案
+	 * @param targetPath 明文輸出位置，已存在時於成功後取代
+	 * @return 處理的資料量與耗時
+	 */
+	public CryptoReport decryptFileByPrivateKey(Path sourcePath, Path targetPath) {
+		return decryptFile(sourcePath, targetPath, false);
+	}
+
+	/**
+	 * 以分段信封模式平行加密，分段分配給ForkJoinPool處理，適用於大量資料<p>
+	 * 輸出與{@link #encryptByPublicKey(InputStream, OutputStream)}格式相同，各分段依序排列
+	 * 
+	 * @param originalBytes 欲加密之byte陣列
+	 * @return 分段信封格式的byte陣列
+	 */
+	public byte[] encryptInParallelByPublicKey(byte[] originalBytes) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(originalBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			byte[] contentKey = Envelope.newContentKey(getRandom());
+			SegmentedEnvelope.Header header = SegmentedEnvelope.newHeader(getRandom(), 0, segmentSize,
+					wrapContentKey(contentKey));
+			byte[] sealedBytes = ParallelEnvelope.encrypt(getForkJoinPool(),
+					new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM), header, originalBytes);
+			event.outputSize = sealedBytes.length;
+			success = true;
+			return sealedBytes;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENVELOPE_ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 平行解密分段信封格式的資料，串流、檔案或平行模式加密的結果皆可使用<br>
+	 * 平行模式加密時不壓縮，但串流模式壓縮過的資料解密後會自動解壓縮
+	 * 
+	 * @param encryptedBytes 分段信封格式的byte陣列
+	 * @return 解密後的byte陣列
+	 */
+	public byte[] decryptInParallelByPrivateKey(byte[] encryptedBytes) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(encryptedBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			SegmentedEnvelope.Header header = SegmentedEnvelope.readHeader(encryptedBytes);
+			byte[] contentKey = unwrapContentKey(header.wrappedKey);
+			byte[] plainBytes = CompressionStage.decompress(header.flags, compressionCodec,
+					ParallelEnvelope.decrypt(getForkJoinPool(),
+							new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM), header, encryptedBytes));
+			event.outputSize = plainBytes.length;
+			success = true;
+			return plainBytes;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			record(event, CryptoMetrics.Operation.ENVELOPE_DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 以記憶體映射方式平行加密檔案，輸出與{@link #encryptFileByPublicKey(Path, Path)}格式相同
+	 * 
+	 * @param sourcePath 明文檔案
+	 * @param targetPath 密文輸出位置，已存在時於成功後取代
+	 * @return 處理的資料量與耗時
+	 */
+	public CryptoReport encryptFileInParallelByPublicKey(Path sourcePath, Path targetPath) {
+		return encryptFile(sourcePath, targetPath, true);
+	}
+
+	/**
+	 * 以記憶體映射方式平行解密檔案，解密失敗時刪除暫存檔，不影響已存在的目標檔
+	 * 
+	 * @param sourcePath 密文檔案
+	 * @param targetPath 明文輸出位置，已存在時於成功後取代
+	 * @return 處理的資料量與耗時
+	 */
+	public CryptoReport decryptFileInParallelByPrivateKey(Path sourcePath, Path targetPath) {
+		return decryptFile(sourcePath, targetPath, true);
+	}
+
+	private CryptoReport encryptFile(Path sourcePath, Path targetPath, boolean parallel) {
+		if (publicKey == null)
+			throw new RuntimeException("There is no publicKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		Path partial = partialPathOf(targetPath);
+		try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ)) {
+			byte[] contentKey = Envelope.newContentKey(getRandom());
+			SegmentedEnvelope.Header header = SegmentedEnvelope.newHeader(getRandom(), 0, segmentSize,
+					wrapContentKey(contentKey));
+			SecretKeySpec key = new SecretKeySpec(contentKey, Envelope.CONTENT_ALGORITHM);
+			long written;
+			try (FileChannel target = openPartial(partial)) {
+				written = parallel ? ParallelEnvelope.encryptFile(getForkJoinPool(), key, header, source, target)
+						: MappedFileCrypto.encrypt(getContentCipher(), key, header, source, target);
+			}
+			moveAtomically(partial, targetPath);
+			CryptoReport report = new CryptoReport(source.size(), written, System.nanoTime() - start);
+			event.inputSize = source.size();
+			event.outputSize = written;
+			success = true;
+			return report;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Encryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			if (!success)
+				deletePartial(partial);
+			record(event, CryptoMetrics.Operation.FILE_ENCRYPT, start, success);
+		}
+	}
+
+	private CryptoReport decryptFile(Path sourcePath, Path targetPath, boolean parallel) {
+		if (privateKey == null)
+			throw new RuntimeException("There is no privateKey setted in this utility instance.");
+		CryptoEvent event = CryptoEvent.start(-1);
+		long start = System.nanoTime();
+		boolean success = false;
+		Path partial = partialPathOf(targetPath);
+		try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ)) {
+			SegmentedEnvelope.Header header = SegmentedEnvelope.readHeader(source);
+			SecretKeySpec key = new SecretKeySpec(unwrapContentKey(header.wrappedKey), Envelope.CONTENT_ALGORITHM);
+			long written;
+			try (FileChannel target = openPartial(partial)) {
+				if (CompressionStage.codecFor(header.flags, compressionCodec) != null)
+					// 壓縮過的內容無法依位置對應，改為依序解密
+					written = decryptSegments(key, header, source, target);
+				else
+					written = parallel ? ParallelEnvelope.decryptFile(getForkJoinPool(), key, header, source, target)
+							: MappedFileCrypto.decrypt(getContentCipher(), key, header, source, target);
+			}
+			moveAtomically(partial, targetPath);
+			CryptoReport report = new CryptoReport(source.size(), written, System.nanoTime() - start);
+			event.inputSize = source.size();
+			event.outputSize = written;
+			success = true;
+			return report;
+		} catch (GeneralSecurityException e) {
+			throw new RuntimeException("Decryption failure. " + e.getMessage());
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：" + e.getMessage());
+		} finally {
+			if (!success)
+				deletePartial(partial);
+			record(event, CryptoMetrics.Operation.FILE_DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 與目標同目錄的暫存檔，完成後可原子更名
+	 */
+	private static Path partialPathOf(Path targetPath) {
+		return targetPath.resolveSibling(targetPath.getFileName() + PARTIAL_SUFFIX);
+	}
+
+	private static FileChannel openPartial(Path partial) throws IOException {
+		return FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * 於暫存檔的channel關閉後呼叫；刪除失敗時保留原本的例外，暫存檔於下次寫入時覆寫
+	 */
+	private static void deletePartial(Path partial) {
+		try {
+			Files.deleteIfExists(partial);
+		} catch (IOException ignored) {
+			// 保留原本的例外
+		}
+	}
+
+	/**
+	 * 依序解密所有分段，表頭有壓縮時解壓縮後再寫出
+	 *
+	 * @return 寫出的明文長度
+	 */
+	private long decryptSegments(SecretKeySpec key, SegmentedEnvelope.Header header, ReadableByteChannel input,
+			WritableByteChannel output) throws IOException, GeneralSecurityException {
+		try (CompressionStage.Sink sink = CompressionStage.openSink(header.flags, compressionCodec, output)) {
+			long length = SegmentedEnvelope.decrypt(getContentCipher(), key, header, input, sink.channel);
+			return sink.finish(length);
+		}
+	}
+
+	/**
+	 * 以公鑰直接加密，開啟金鑰標籤時於密文前附上標籤
+	 */
+	private byte[] doEncrypt(byte[] plainBytes) throws GeneralSecurityException {
+		checkDirectMode();
+		byte[] sealed = new byte[getOutputSize(plainBytes.length)];
+		int length = doEncrypt(plainBytes, sealed);
+		return length == sealed.length ? sealed : Arrays.copyOf(sealed, length);
+	}
+
+	/**
+	 * 以公鑰直接加密並寫入output，output長度須至少為{@link #getOutputSize(int)}
+	 *
+	 * @return 寫入的byte數
+	 */
+	private int doEncrypt(byte[] plainBytes, byte[] output) throws GeneralSecurityException {
+		CryptoEvent event = CryptoEvent.start(plainBytes.length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			checkDirectMode();
+			int offset = 0;
+			if (keyTagging) {
+				KeyTag.write(output, KeyTag.TYPE_RSA, keyFingerprint);
+				offset = KeyTag.LENGTH;
+			}
+			int length = offset + getEncryptionCipher().doFinal(plainBytes, 0, plainBytes.length, output, offset);
+			event.outputSize = length;
+			success = true;
+			return length;
+		} finally {
+			record(event, CryptoMetrics.Operation.ENCRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 以私鑰直接解密，開啟金鑰標籤時先比對指紋
+	 */
+	private byte[] doDecrypt(byte[] encryptedBytes) throws GeneralSecurityException {
+		int length = doDecrypt(encryptedBytes, encryptedBytes.length);
+		return Arrays.copyOf(plainScratch, length);
+	}
+
+	/**
+	 * 以私鑰解密encryptedBytes的前length個byte，結果寫入plainScratch
+	 *
+	 * @return 明文長度
+	 */
+	private int doDecrypt(byte[] encryptedBytes, int length) throws GeneralSecurityException {
+		CryptoEvent event = CryptoEvent.start(length);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			checkDirectMode();
+			int offset = 0;
+			if (keyTagging) {
+				if (length < KeyTag.LENGTH)
+					throw new GeneralSecurityException("Ciphertext has no key tag.");
+				KeyTag.check(encryptedBytes, KeyTag.TYPE_RSA, keyFingerprint);
+				offset = KeyTag.LENGTH;
+			}
+			Cipher cipher = getDecryptionCipher();
+			plainScratch = ensureCapacity(plainScratch, cipher.getOutputSize(length - offset));
+			int plainLength = cipher.doFinal(encryptedBytes, offset, length - offset, plainScratch, 0);
+			event.outputSize = plainLength;
+			success = true;
+			return plainLength;
+		} finally {
+			record(event, CryptoMetrics.Operation.DECRYPT, start, success);
+		}
+	}
+
+	/**
+	 * 加密後直接於暫存區編碼為Base64，只配置結果字串
+	 */
+	private String encryptToString(byte[] plainBytes) throws GeneralSecurityException {
+		checkDirectMode();
+		cipherScratch = ensureCapacity(cipherScratch, getOutputSize(plainBytes.length));
+		int length = doEncrypt(plainBytes, cipherScratch);
+		textScratch = ensureCapacity(textScratch, base64Flavor.encodedLength(length));
+		int textLength = base64Flavor.encode(cipherScratch, 0, length, textScratch, 0);
+		return new String(textScratch, 0, textLength, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * 直接由字串的字元解碼至暫存區後解密，結果寫入plainScratch
+	 *
+	 * @return 明文長度
+	 */
+	private int decryptFromString(String encryptedBase64String) throws GeneralSecurityException {
+		cipherScratch = ensureCapacity(cipherScratch, base64Flavor.maxDecodedLength(encryptedBase64String.length()));
+		int length = base64Flavor.decode(encryptedBase64String, cipherScratch, 0);
+		return doDecrypt(cipherScratch, length);
+	}
+
+	private static byte[] ensureCapacity(byte[] scratch, int capacity) {
+		return scratch != null && scratch.length >= capacity ? scratch : new byte[capacity];
+	}
+
+	/**
+	 * 有設定統計時記錄一次操作，並結束JFR事件
+	 */
+	private void record(CryptoEvent event, CryptoMetrics.Operation operation, long start, boolean success) {
+		if (timers != null)
+			timers[operation.ordinal()].record(start, success);
+		event.finish("EncryptionUtil", operation, actualKeySize, success);
+	}
+
+	/**
+	 * 以公鑰包裝信封內容使用的AES金鑰
+	 */
+	private byte[] wrapContentKey(byte[] contentKey) throws GeneralSecurityException {
+		if (eciesKeyWrap != null)
+			return eciesKeyWrap.wrap(contentKey);
+		return getEncryptionCipher().doFinal(contentKey);
+	}
+
+	/**
+	 * 以私鑰解開信封內容使用的AES金鑰
+	 */
+	private byte[] unwrapContentKey(byte[] wrappedKey) throws GeneralSecurityException {
+		byte[] contentKey = eciesKeyWrap != null ? eciesKeyWrap.unwrap(wrappedKey) : getDecryptionCipher().doFinal(wrappedKey);
+		if (contentKey.length != Envelope.CONTENT_KEY_LENGTH)
+			throw new GeneralSecurityException("Invalid content key length.");
+		return contentKey;
+	}
+
+	/**
+	 * RSA直接加解密僅適用於RSA金鑰，EC與XDH金鑰須使用信封模式
+	 */
+	private void checkDirectMode() throws GeneralSecurityException {
+		if (eciesKeyWrap != null)
+			throw new GeneralSecurityException("Direct encryption requires an RSA key, please use the envelope methods.");
+	}
+
+	private Cipher getEncryptionCipher() throws GeneralSecurityException {
+		if (encryptionCipher == null)
+			encryptionCipher = newRsaCipher(Cipher.ENCRYPT_MODE, publicKey);
+		return encryptionCipher;
+	}
+
+	private Cipher getDecryptionCipher() throws GeneralSecurityException {
+		if (decryptionCipher == null)
+			decryptionCipher = newRsaCipher(Cipher.DECRYPT_MODE, privateKey);
+		return decryptionCipher;
+	}
+
+	private Cipher newRsaCipher(int mode, Key key) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(algorithm);
+		cipher.init(mode, key);
+		return cipher;
+	}
+
+	private SecureRandom getRandom() {
+		if (random == null)
+			random = new SecureRandom();
+		return random;
+	}
+
+	private Cipher getContentCipher() {
+		if (contentCipher == null)
+			contentCipher = Envelope.newContentCipher();
+		return contentCipher;
+	}
+
+	private ForkJoinPool getForkJoinPool() {
+		return ParallelEnvelope.pool(parallelism);
+	}
 }
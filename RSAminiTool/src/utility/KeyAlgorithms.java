@@ -0,0 +1,142 @@
+package utility;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.Key;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.XECKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.NamedParameterSpec;
+
+/**
+ * 各金鑰演算法的名稱對應與金鑰產生方式<p>
+ * RSA與EC依金鑰長度產生；X25519、X448、Ed25519、Ed448為固定曲線，金鑰長度由曲線決定。
+ * 僅以演算法名稱操作，編譯時不需要Java 15的EdDSA類別。
+ *
+ * @author EnixLin
+ *
+ */
+final class KeyAlgorithms {
+
+	private KeyAlgorithms() {
+	}
+
+	static boolean isEC(String algorithm) {
+		return "EC".equalsIgnoreCase(algorithm);
+	}
+
+	/**
+	 * 未設定金鑰長度時使用的長度，EC為P-256，XDH與EdDSA為25519曲線
+	 *
+	 * @return 沿用原設定(例如RSA)時為0
+	 */
+	static int defaultKeySize(String algorithm) {
+		if (isEC(algorithm))
+			return 256;
+		if ("XDH".equals(algorithm) || "EdDSA".equals(algorithm))
+			return 255;
+		return 0;
+	}
+
+	/**
+	 * 固定曲線演算法的金鑰長度
+	 *
+	 * @return 非固定曲線時為0
+	 */
+	static int fixedKeySize(String algorithm) {
+		switch (algorithm) {
+		case "X25519":
+		case "Ed25519":
+			return 255;
+		case "X448":
+			return 448;
+		case "Ed448":
+			return 456;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * 讀取金鑰時使用的KeyFactory名稱，X25519/X448屬於XDH，Ed25519/Ed448屬於EdDSA
+	 */
+	static String keyFactoryAlgorithm(String algorithm) {
+		switch (algorithm) {
+		case "X25519":
+		case "X448":
+			return "XDH";
+		case "Ed25519":
+		case "Ed448":
+			return "EdDSA";
+		default:
+			return algorithm;
+		}
+	}
+
+	/**
+	 * 可用於信封模式金鑰交換的KeyAgreement名稱
+	 *
+	 * @return 金鑰不支援金鑰交換(例如RSA、EdDSA)時為null
+	 */
+	static String keyAgreementAlgorithm(Key key) {
+		switch (key.getAlgorithm()) {
+		case "EC":
+			return "ECDH";
+		case "XDH":
+		case "X25519":
+		case "X448":
+			return "XDH";
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * 建立並初始化KeyPairGenerator，EC依金鑰長度選擇曲線
+	 */
+	static KeyPairGenerator newKeyPairGenerator(String algorithm, int keySize, SecureRandom random) {
+		try {
+			KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(algorithm);
+			if (isEC(algorithm))
+				keyPairGenerator.initialize(new ECGenParameterSpec(curveName(keySize)), random);
+			else if (fixedKeySize(algorithm) > 0)
+				keyPairGenerator.initialize(new NamedParameterSpec(algorithm), random);
+			else
+				keyPairGenerator.initialize(keySize, random);
+			return keyPairGenerator;
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("No Such Algorithm. Please check again.");
+		} catch (InvalidAlgorithmParameterException | InvalidParameterException e) {
+			throw new RuntimeException("Unsupported key size " + keySize + " for " + algorithm + ". " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 取得金鑰長度，RSA為modulus位元數，EC為曲線的位元數，XDH依曲線為255或448
+	 *
+	 * @return 無法判斷時為fallback
+	 */
+	static int keySizeOf(Key key, int fallback) {
+		if (key instanceof ECKey)
+			return ((ECKey) key).getParams().getCurve().getField().getFieldSize();
+		if (key instanceof XECKey && ((XECKey) key).getParams() instanceof NamedParameterSpec)
+			return fixedKeySize(((NamedParameterSpec) ((XECKey) key).getParams()).getName());
+		return fallback;
+	}
+
+	private static String curveName(int keySize) {
+		switch (keySize) {
+		case 256:
+			return "secp256r1";
+		case 384:
+			return "secp384r1";
+		case 521:
+			return "secp521r1";
+		default:
+			throw new InvalidParameterException("EC key size must be 256, 384 or 521.");
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package utility;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 於背景預先產生KeyPair的池，取用時不必等待質數產生<p>
+ * 每種金鑰長度各有一個有界佇列，數量低於低水位時由背景執行緒補充至上限；
+ * 佇列已空時改由呼叫端執行緒直接產生。
+ *
+ * @author EnixLin
+ *
+ */
+public class KeyPairPool implements AutoCloseable {
+
+	private String algorithm;
+	private int[] keySizes;
+	private int capacity;
+	private int lowWaterMark;
+	private int workerThreads;
+
+	private final Map<Integer, SizePool> pools = new HashMap<>();
+	private ExecutorService workers;
+	private final ThreadLocal<Map<Integer, KeyPairGenerator>> generators = ThreadLocal.withInitial(HashMap::new);
+	private volatile boolean closed;
+
+	/**
+	 * 預設值使用RSA，長度2048，每種長度保留16組，低於4組時補充，1個背景執行緒
+	 */
+	private KeyPairPool() {
+		this.algorithm = "RSA";
+		this.keySizes = new int[] { 2048 };
+		this.capacity = 16;
+		this.lowWaterMark = 4;
+		this.workerThreads = 1;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public static class Builder {
+
+		/** 預設數值 */
+		private KeyPairPool keyPairPool = new KeyPairPool();
+
+		public Builder setAlgorithm(String algorithm) {
+			keyPairPool.algorithm = algorithm;
+			return this;
+		}
+
+		/** 需預先產生的金鑰長度，可多個 */
+		public Builder setKeySizes(int... keySizes) {
+			keyPairPool.keySizes = keySizes.clone();
+			return this;
+		}
+
+		/** 每種金鑰長度最多保留的數量 */
+		public Builder setCapacity(int capacity) {
+			keyPairPool.capacity = capacity;
+			return this;
+		}
+
+		/** 佇列數量低於此值時開始補充 */
+		public Builder setLowWaterMark(int lowWaterMark) {
+			keyPairPool.lowWaterMark = lowWaterMark;
+			return this;
+		}
+
+		/** 背景產生金鑰的執行緒數量 */
+		public Builder setWorkerThreads(int workerThreads) {
+			keyPairPool.workerThreads = workerThreads;
+			return this;
+		}
+
+		/**
+		 * 建立後立即開始於背景填滿各佇列
+		 */
+		public KeyPairPool build() {
+
+			KeyPairPool pool = keyPairPool;
+			if (pool.capacity < 1 || pool.workerThreads < 1 || pool.lowWaterMark < 0
+					|| pool.lowWaterMark > pool.capacity)
+				throw new RuntimeException("KeyPairPool building failure. Please check the pool settings.");
+			// 每個長度先初始化一次，演算法或長度不支援時於此拋出例外，而非在背景執行緒與每次取用時
+			for (int keySize : pool.keySizes) {
+				pool.newGenerator(keySize);
+			}
+			AtomicInteger threadNumber = new AtomicInteger();
+			pool.workers = Executors.newFixedThreadPool(pool.workerThreads, runnable -> {
+				Thread thread = new Thread(runnable, "key-pregeneration-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+			for (int keySize : pool.keySizes) {
+				pool.pools.put(keySize, new SizePool(pool.capacity));
+			}
+			for (int keySize : pool.keySizes) {
+				pool.refill(keySize);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * 是否有預先產生此長度的金鑰
+	 */
+	public boolean supports(int keySize) {
+		return pools.containsKey(keySize);
+	}
+
+	/**
+	 * 取得一組KeyPair，佇列中有現成的即直接回傳，否則於目前執行緒產生
+	 *
+	 * @param keySize 金鑰長度，須為建立時指定的長度之一
+	 * @return
+	 */
+	public KeyPair take(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		if (sizePool == null)
+			throw new RuntimeException("Key size " + keySize + " is not pre-generated by this pool.");
+		KeyPair keyPair = sizePool.queue.poll();
+		if (keyPair != null) {
+			sizePool.reserved.decrementAndGet();
+			sizePool.hits.increment();
+		} else {
+			sizePool.misses.increment();
+			keyPair = generate(keySize, sizePool);
+		}
+		if (sizePool.queue.size() <= lowWaterMark)
+			refill(keySize);
+		return keyPair;
+	}
+
+	/**
+	 * 目前佇列中現成的數量
+	 */
+	public int getQueueDepth(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		return sizePool == null ? 0 : sizePool.queue.size();
+	}
+
+	/**
+	 * 累計產生的數量，含佇列已空時由呼叫端產生的
+	 */
+	public long getGeneratedCount(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		return sizePool == null ? 0 : sizePool.generated.sum();
+	}
+
+	/**
+	 * 直接由佇列取得的次數
+	 */
+	public long getHitCount(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		return sizePool == null ? 0 : sizePool.hits.sum();
+	}
+
+	/**
+	 * 佇列已空、需由呼叫端產生的次數
+	 */
+	public long getMissCount(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		return sizePool == null ? 0 : sizePool.misses.sum();
+	}
+
+	/**
+	 * 平均產生一組金鑰的耗時(毫秒)，可換算補充速度
+	 */
+	public double getAverageGenerationMillis(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		long generated = sizePool == null ? 0 : sizePool.generated.sum();
+		return generated == 0 ? 0 : sizePool.generationNanos.sum() / 1_000_000.0 / generated;
+	}
+
+	/**
+	 * 停止背景產生，佇列中剩餘的金鑰仍可取用
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		workers.shutdownNow();
+	}
+
+	/**
+	 * 讓背景執行緒補充至上限，補充中的執行緒數不超過背景執行緒總數
+	 */
+	private void refill(int keySize) {
+		SizePool sizePool = pools.get(keySize);
+		while (!closed) {
+			int running = sizePool.refillers.get();
+			if (running >= workerThreads || sizePool.reserved.get() >= capacity)
+				return;
+			if (sizePool.refillers.compareAndSet(running, running + 1))
+				break;
+		}
+		if (closed)
+			return;
+		try {
+			workers.execute(() -> {
+				try {
+					// 先預留名額再產生，避免多個執行緒同時補充而超過上限
+					while (!closed) {
+						if (sizePool.reserved.incrementAndGet() > capacity) {
+							sizePool.reserved.decrementAndGet();
+							return;
+						}
+						try {
+							sizePool.queue.offer(generate(keySize, sizePool));
+						} catch (RuntimeException e) {
+							sizePool.reserved.decrementAndGet();
+							throw e;
+						}
+					}
+				} finally {
+					sizePool.refillers.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			sizePool.refillers.decrementAndGet();
+		}
+	}
+
+	private KeyPair generate(int keySize, SizePool sizePool) {
+		long start = System.nanoTime();
+		KeyPair keyPair = generators.get().computeIfAbsent(keySize, this::newGenerator).generateKeyPair();
+		sizePool.generationNanos.add(System.nanoTime() - start);
+		sizePool.generated.increment();
+		return keyPair;
+	}
+
+	/**
+	 * 與RSAKeyUtil相同由KeyAlgorithms依長度選擇曲線
+	 */
+	private KeyPairGenerator newGenerator(int keySize) {
+		return KeyAlgorithms.newKeyPairGenerator(algorithm, keySize, new SecureRandom());
+	}
+
+	/**
+	 * 單一金鑰長度的佇列與統計
+	 */
+	private static final class SizePool {
+
+		final BlockingQueue<KeyPair> queue;
+		/** 佇列中與正在產生的數量合計 */
+		final AtomicInteger reserved = new AtomicInteger();
+		final AtomicInteger refillers = new AtomicInteger();
+		final LongAdder generated = new LongAdder();
+		final LongAdder generationNanos = new LongAdder();
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+
+		SizePool(int capacity) {
+			this.queue = new ArrayBlockingQueue<>(capacity);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package utility;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * 附在密文前的金鑰標籤，標明加密時使用的公鑰指紋，格式如下：
+ *
+ * <pre>
+ * 'K' 'T' | 類型(1) | 指紋(8) | 密文
+ * </pre>
+ *
+ * 類型為{@link #TYPE_RSA}時密文為RSA直接加密的結果，為{@link #TYPE_ENVELOPE}時為{@link Envelope}格式。
+ *
+ * @author EnixLin
+ *
+ */
+final class KeyTag {
+
+	static final byte MAGIC_0 = 'K';
+	static final byte MAGIC_1 = 'T';
+	static final byte TYPE_RSA = 1;
+	static final byte TYPE_ENVELOPE = 2;
+	static final int LENGTH = 11;
+
+	private KeyTag() {
+	}
+
+	/**
+	 * 寫入標籤至data開頭，data須保留{@link #LENGTH}的空間
+	 */
+	static void write(byte[] data, byte type, long fingerprint) {
+		ByteBuffer.wrap(data).put(MAGIC_0).put(MAGIC_1).put(type).putLong(fingerprint);
+	}
+
+	/**
+	 * 寫入標籤至buffer目前的位置，position往後移動{@link #LENGTH}，不配置暫存陣列<p>
+	 * 指紋固定以big-endian寫入，不受buffer的byte order影響
+	 */
+	static void write(ByteBuffer buffer, byte type, long fingerprint) {
+		int position = buffer.position();
+		if (buffer.remaining() < LENGTH)
+			throw new BufferOverflowException();
+		buffer.put(position, MAGIC_0).put(position + 1, MAGIC_1).put(position + 2, type);
+		for (int i = 0; i < 8; i++)
+			buffer.put(position + 3 + i, (byte) (fingerprint >>> (56 - 8 * i)));
+		buffer.position(position + LENGTH);
+	}
+
+	static boolean isTagged(byte[] data) {
+		return data.length >= LENGTH && data[0] == MAGIC_0 && data[1] == MAGIC_1
+				&& (data[2] == TYPE_RSA || data[2] == TYPE_ENVELOPE);
+	}
+
+	static byte type(byte[] data) {
+		return data[2];
+	}
+
+	static long fingerprint(byte[] data) {
+		return ByteBuffer.wrap(data, 3, 8).getLong();
+	}
+
+	/**
+	 * 檢查標籤的類型與指紋，不符時拋出例外
+	 */
+	static void check(byte[] data, byte type, long fingerprint) throws GeneralSecurityException {
+		if (!isTagged(data) || type(data) != type)
+			throw new GeneralSecurityException("Ciphertext has no key tag.");
+		if (fingerprint(data) != fingerprint)
+			throw new GeneralSecurityException("Ciphertext was encrypted with another key ("
+					+ KeyFingerprint.toHex(fingerprint(data)) + ").");
+	}
+
+	/**
+	 * 檢查buffer目前位置的標籤，符合時position往後移動{@link #LENGTH}，不配置暫存陣列
+	 */
+	static void check(ByteBuffer buffer, byte type, long fingerprint) throws GeneralSecurityException {
+		int position = buffer.position();
+		if (buffer.remaining() < LENGTH || buffer.get(position) != MAGIC_0 || buffer.get(position + 1) != MAGIC_1
+				|| buffer.get(position + 2) != type)
+			throw new GeneralSecurityException("Ciphertext has no key tag.");
+		long tagged = 0;
+		for (int i = 0; i < 8; i++)
+			tagged = (tagged << 8) | (buffer.get(position + 3 + i) & 0xff);
+		if (tagged != fingerprint)
+			throw new GeneralSecurityException(
+					"Ciphertext was encrypted with another key (" + KeyFingerprint.toHex(tagged) + ").");
+		buffer.position(position + LENGTH);
+	}
+}
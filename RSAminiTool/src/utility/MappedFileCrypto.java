@@ -0,0 +1,126 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 以記憶體映射(FileChannel.map)處理分段信封格式的檔案加解密<p>
+ * 讀入與寫出皆透過映射的緩衝區，分段位置可由明文長度直接算出，
+ * 因此每次映射一個視窗範圍內的分段，資料不會複製到heap上的byte陣列。
+ * 檔案格式與{@link SegmentedEnvelope}相同，可與串流模式互相解密。
+ *
+ * @author EnixLin
+ *
+ */
+final class MappedFileCrypto {
+
+	/** 每次映射的視窗大小上限 */
+	private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+	private MappedFileCrypto() {
+	}
+
+	/**
+	 * 加密整個檔案，寫出表頭與所有分段
+	 *
+	 * @return 寫出的檔案大小
+	 */
+	static long encrypt(Cipher cipher, SecretKeySpec key, SegmentedEnvelope.Header header, FileChannel source,
+			FileChannel target) throws IOException, GeneralSecurityException {
+
+		long plainSize = source.size();
+		long segmentCount = checkSegmentCount(plainSize, header.segmentSize);
+		SegmentedEnvelope.writeFully(target.position(0), ByteBuffer.wrap(header.encoded));
+		processSegments(true, cipher, key, header, plainSize, source, target, 0, segmentCount);
+		return header.length() + SegmentedEnvelope.sealedLength(plainSize, header.segmentSize);
+	}
+
+	/**
+	 * 解密整個檔案，source的表頭須已由{@link SegmentedEnvelope#readHeader}讀出
+	 *
+	 * @return 寫出的明文大小
+	 */
+	static long decrypt(Cipher cipher, SecretKeySpec key, SegmentedEnvelope.Header header, FileChannel source,
+			FileChannel target) throws IOException, GeneralSecurityException {
+
+		long plainSize = plainSize(header, source.size());
+		long segmentCount = checkSegmentCount(plainSize, header.segmentSize);
+		processSegments(false, cipher, key, header, plainSize, source, target, 0, segmentCount);
+		return plainSize;
+	}
+
+	/**
+	 * 由密文檔案大小算出明文大小，長度不合法時拋出例外
+	 */
+	static long plainSize(SegmentedEnvelope.Header header, long sealedFileSize) throws IOException {
+		long plainSize = SegmentedEnvelope.plainLength(sealedFileSize - header.length(), header.segmentSize);
+		if (plainSize < 0)
+			throw new IOException("Envelope file is truncated.");
+		return plainSize;
+	}
+
+	static long checkSegmentCount(long plainSize, int segmentSize) throws IOException {
+		long segmentCount = SegmentedEnvelope.segmentCount(plainSize, segmentSize);
+		if (segmentCount > Integer.MAX_VALUE)
+			throw new IOException("Too many segments.");
+		return segmentCount;
+	}
+
+	/**
+	 * 處理序號在[fromSegment, toSegment)之間的分段，不同範圍可由不同執行緒各自處理
+	 *
+	 * @param encrypt   true為加密(source為明文)，false為解密(source為密文)
+	 * @param plainSize 明文總長度
+	 */
+	static void processSegments(boolean encrypt, Cipher cipher, SecretKeySpec key, SegmentedEnvelope.Header header,
+			long plainSize, FileChannel source, FileChannel target, long fromSegment, long toSegment)
+			throws IOException, GeneralSecurityException {
+
+		int segmentSize = header.segmentSize;
+		int sealedSegmentSize = SegmentedEnvelope.sealedSegmentSize(segmentSize);
+		long lastSegment = SegmentedEnvelope.segmentCount(plainSize, segmentSize) - 1;
+		long window = Math.max(1, WINDOW_BYTES / sealedSegmentSize);
+
+		for (long first = fromSegment; first < toSegment; first += window) {
+			long end = Math.min(toSegment, first + window);
+			long plainStart = first * segmentSize;
+			long plainEnd = Math.min(plainSize, end * segmentSize);
+			long sealedStart = header.length() + plainStart + first * Envelope.TAG_LENGTH;
+			long sealedEnd = header.length() + plainEnd + end * Envelope.TAG_LENGTH;
+
+			MappedByteBuffer plainMap = encrypt ? source.map(MapMode.READ_ONLY, plainStart, plainEnd - plainStart)
+					: target.map(MapMode.READ_WRITE, plainStart, plainEnd - plainStart);
+			MappedByteBuffer sealedMap = encrypt
+					? target.map(MapMode.READ_WRITE, sealedStart, sealedEnd - sealedStart)
+					: source.map(MapMode.READ_ONLY, sealedStart, sealedEnd - sealedStart);
+
+			for (long index = first; index < end; index++) {
+				int plainOffset = (int) ((index - first) * segmentSize);
+				int plainLength = (int) (Math.min(plainSize, (index + 1) * segmentSize) - index * segmentSize);
+				int sealedOffset = (int) ((index - first) * sealedSegmentSize);
+				ByteBuffer plain = slice(plainMap, plainOffset, plainLength);
+				ByteBuffer sealed = slice(sealedMap, sealedOffset, plainLength + Envelope.TAG_LENGTH);
+				if (encrypt) {
+					SegmentedEnvelope.encryptSegment(cipher, key, header, (int) index, index == lastSegment, plain,
+							sealed);
+				} else {
+					SegmentedEnvelope.decryptSegment(cipher, key, header, (int) index, index == lastSegment, sealed,
+							plain);
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.limit(offset + length).position(offset);
+		return slice.slice();
+	}
+}
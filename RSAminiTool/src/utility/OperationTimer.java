@@ -0,0 +1,86 @@
+package utility;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 單一操作與金鑰長度的計數與延遲直方圖，成功與失敗分開統計<p>
+ * 各計數皆為LongAdder，多執行緒同時記錄時不會互相競爭；
+ * 直方圖為固定的2倍級距，記錄時只需一次位元運算決定級距。
+ *
+ * @author EnixLin
+ *
+ */
+final class OperationTimer {
+
+	/** 第0級距的上限為1024奈秒(約1微秒)，之後每級加倍 */
+	static final int BUCKET_COUNT = 26;
+	private static final int FIRST_BUCKET_SHIFT = 10;
+
+	final CryptoMetrics.Operation operation;
+	final int keySize;
+	private final LongAdder[] successBuckets = newBuckets();
+	private final LongAdder[] failureBuckets = newBuckets();
+	private final LongAdder successNanos = new LongAdder();
+	private final LongAdder failureNanos = new LongAdder();
+
+	OperationTimer(CryptoMetrics.Operation operation, int keySize) {
+		this.operation = operation;
+		this.keySize = keySize;
+	}
+
+	/**
+	 * 記錄一次操作
+	 *
+	 * @param startNanos 開始時的System.nanoTime()
+	 * @param success    是否成功
+	 */
+	void record(long startNanos, boolean success) {
+		long nanos = Math.max(0, System.nanoTime() - startNanos);
+		if (success) {
+			successBuckets[bucketOf(nanos)].increment();
+			successNanos.add(nanos);
+		} else {
+			failureBuckets[bucketOf(nanos)].increment();
+			failureNanos.add(nanos);
+		}
+	}
+
+	OperationStats snapshot(boolean success) {
+		LongAdder[] buckets = success ? successBuckets : failureBuckets;
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return new OperationStats(operation, keySize, success, counts,
+				success ? successNanos.sum() : failureNanos.sum());
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			successBuckets[i].reset();
+			failureBuckets[i].reset();
+		}
+		successNanos.reset();
+		failureNanos.reset();
+	}
+
+	/**
+	 * 級距i的上限(奈秒)，最後一級沒有上限
+	 */
+	static long upperBoundNanos(int bucket) {
+		return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (FIRST_BUCKET_SHIFT + bucket);
+	}
+
+	private static int bucketOf(long nanos) {
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos >>> FIRST_BUCKET_SHIFT);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	private static LongAdder[] newBuckets() {
+		LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+		return buckets;
+	}
+}
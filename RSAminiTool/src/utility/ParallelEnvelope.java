@@ -0,0 +1,195 @@
+package utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 以ForkJoinPool平行處理分段信封格式<p>
+ * 每個分段以各自的nonce獨立加密，位置可由長度直接算出，因此可任意切分給不同執行緒，
+ * 每段結果寫回固定位置，輸出內容與循序處理完全相同。
+ *
+ * @author EnixLin
+ *
+ */
+final class ParallelEnvelope {
+
+	/** byte陣列模式下，每個工作最少處理的分段數 */
+	private static final int ARRAY_LEAF_SEGMENTS = 16;
+	/** 檔案模式下，每個工作最少處理的分段數，避免過於頻繁的映射 */
+	private static final int FILE_LEAF_SEGMENTS = 256;
+
+	/** 每個工作執行緒各自持有的AES/GCM Cipher */
+	private static final ThreadLocal<Cipher> CONTENT_CIPHERS = ThreadLocal.withInitial(Envelope::newContentCipher);
+
+	/** 依執行緒數共用的ForkJoinPool，閒置的工作執行緒會自行結束，不需關閉 */
+	private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+	private ParallelEnvelope() {
+	}
+
+	/**
+	 * 取得指定執行緒數的共用ForkJoinPool，與common pool相同時直接使用common pool
+	 */
+	static ForkJoinPool pool(int parallelism) {
+		if (parallelism == ForkJoinPool.getCommonPoolParallelism())
+			return ForkJoinPool.commonPool();
+		return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+	}
+
+	/**
+	 * 平行加密byte陣列，結果含表頭
+	 */
+	static byte[] encrypt(ForkJoinPool pool, SecretKeySpec key, SegmentedEnvelope.Header header, byte[] plainBytes)
+			throws IOException, GeneralSecurityException {
+
+		int segmentSize = header.segmentSize;
+		long sealedLength = header.length() + SegmentedEnvelope.sealedLength(plainBytes.length, segmentSize);
+		if (sealedLength > Integer.MAX_VALUE - 8)
+			throw new IOException("Data is too large for a byte array, use the file mode instead.");
+		byte[] sealedBytes = new byte[(int) sealedLength];
+		System.arraycopy(header.encoded, 0, sealedBytes, 0, header.length());
+
+		long segmentCount = SegmentedEnvelope.segmentCount(plainBytes.length, segmentSize);
+		run(pool, segmentCount, ARRAY_LEAF_SEGMENTS, (cipher, from, to) -> {
+			for (long index = from; index < to; index++) {
+				int plainOffset = (int) (index * segmentSize);
+				int plainLength = Math.min(segmentSize, plainBytes.length - plainOffset);
+				int sealedOffset = header.length() + plainOffset + (int) index * Envelope.TAG_LENGTH;
+				SegmentedEnvelope.encryptSegment(cipher, key, header, (int) index, index == segmentCount - 1,
+						ByteBuffer.wrap(plainBytes, plainOffset, plainLength),
+						ByteBuffer.wrap(sealedBytes, sealedOffset, plainLength + Envelope.TAG_LENGTH));
+			}
+		});
+		return sealedBytes;
+	}
+
+	/**
+	 * 平行解密byte陣列，header須由sealedBytes開頭解析而得
+	 */
+	static byte[] decrypt(ForkJoinPool pool, SecretKeySpec key, SegmentedEnvelope.Header header, byte[] sealedBytes)
+			throws IOException, GeneralSecurityException {
+
+		int segmentSize = header.segmentSize;
+		long plainLength = SegmentedEnvelope.plainLength(sealedBytes.length - header.length(), segmentSize);
+		if (plainLength < 0)
+			throw new IOException("Envelope is truncated.");
+		byte[] plainBytes = new byte[(int) plainLength];
+
+		long segmentCount = SegmentedEnvelope.segmentCount(plainLength, segmentSize);
+		run(pool, segmentCount, ARRAY_LEAF_SEGMENTS, (cipher, from, to) -> {
+			for (long index = from; index < to; index++) {
+				int plainOffset = (int) (index * segmentSize);
+				int segmentLength = Math.min(segmentSize, plainBytes.length - plainOffset);
+				int sealedOffset = header.length() + plainOffset + (int) index * Envelope.TAG_LENGTH;
+				SegmentedEnvelope.decryptSegment(cipher, key, header, (int) index, index == segmentCount - 1,
+						ByteBuffer.wrap(sealedBytes, sealedOffset, segmentLength + Envelope.TAG_LENGTH),
+						ByteBuffer.wrap(plainBytes, plainOffset, segmentLength));
+			}
+		});
+		return plainBytes;
+	}
+
+	/**
+	 * 平行加密檔案，以記憶體映射讀寫
+	 *
+	 * @return 寫出的檔案大小
+	 */
+	static long encryptFile(ForkJoinPool pool, SecretKeySpec key, SegmentedEnvelope.Header header,
+			FileChannel source, FileChannel target) throws IOException, GeneralSecurityException {
+
+		long plainSize = source.size();
+		long segmentCount = MappedFileCrypto.checkSegmentCount(plainSize, header.segmentSize);
+		SegmentedEnvelope.writeFully(target.position(0), ByteBuffer.wrap(header.encoded));
+		run(pool, segmentCount, FILE_LEAF_SEGMENTS, (cipher, from, to) -> MappedFileCrypto.processSegments(true,
+				cipher, key, header, plainSize, source, target, from, to));
+		return header.length() + SegmentedEnvelope.sealedLength(plainSize, header.segmentSize);
+	}
+
+	/**
+	 * 平行解密檔案，source的表頭須已讀出
+	 *
+	 * @return 寫出的明文大小
+	 */
+	static long decryptFile(ForkJoinPool pool, SecretKeySpec key, SegmentedEnvelope.Header header,
+			FileChannel source, FileChannel target) throws IOException, GeneralSecurityException {
+
+		long plainSize = MappedFileCrypto.plainSize(header, source.size());
+		long segmentCount = MappedFileCrypto.checkSegmentCount(plainSize, header.segmentSize);
+		run(pool, segmentCount, FILE_LEAF_SEGMENTS, (cipher, from, to) -> MappedFileCrypto.processSegments(false,
+				cipher, key, header, plainSize, source, target, from, to));
+		return plainSize;
+	}
+
+	private static void run(ForkJoinPool pool, long segmentCount, int leafSegments, SegmentRange range)
+			throws IOException, GeneralSecurityException {
+		try {
+			pool.invoke(new SegmentTask(range, 0, segmentCount, leafSegments));
+		} catch (SegmentFailure e) {
+			Throwable cause = e.getCause();
+			while (cause instanceof SegmentFailure)
+				cause = cause.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw (GeneralSecurityException) cause;
+		}
+	}
+
+	/**
+	 * 處理序號在[from, to)之間的分段
+	 */
+	private interface SegmentRange {
+		void process(Cipher cipher, long from, long to) throws IOException, GeneralSecurityException;
+	}
+
+	private static final class SegmentTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SegmentRange range;
+		private final long from, to;
+		private final int leafSegments;
+
+		SegmentTask(SegmentRange range, long from, long to, int leafSegments) {
+			this.range = range;
+			this.from = from;
+			this.to = to;
+			this.leafSegments = leafSegments;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= leafSegments) {
+				try {
+					range.process(CONTENT_CIPHERS.get(), from, to);
+				} catch (IOException | GeneralSecurityException e) {
+					throw new SegmentFailure(e);
+				}
+				return;
+			}
+			long middle = (from + to) >>> 1;
+			invokeAll(new SegmentTask(range, from, middle, leafSegments),
+					new SegmentTask(range, middle, to, leafSegments));
+		}
+	}
+
+	/**
+	 * 於工作中拋出的檢查型例外，由{@link ParallelEnvelope#run}還原
+	 */
+	private static final class SegmentFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		SegmentFailure(Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package utility;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 直接在原始byte上解析PEM格式的工具<p>
+ * 自行尋找 BEGIN/END 標記，一個檔案可含多個區塊；Base64內容略過換行後直接解碼為DER，
+ * 不經過字串與行的轉換。另可將PKCS#1的RSA金鑰與SEC1的EC私鑰包裝為Java可讀取的PKCS#8與X.509格式。
+ *
+ * @author EnixLin
+ *
+ */
+final class PemParser {
+
+	static final String PUBLIC_KEY = "PUBLIC KEY";
+	static final String PRIVATE_KEY = "PRIVATE KEY";
+	static final String RSA_PUBLIC_KEY = "RSA PUBLIC KEY";
+	static final String RSA_PRIVATE_KEY = "RSA PRIVATE KEY";
+	static final String EC_PRIVATE_KEY = "EC PRIVATE KEY";
+
+	private static final byte[] BEGIN = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] END = "-----END ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DASHES = "-----".getBytes(StandardCharsets.US_ASCII);
+
+	/** rsaEncryption (1.2.840.113549.1.1.1) 的AlgorithmIdentifier，含NULL參數 */
+	private static final byte[] RSA_ALGORITHM_IDENTIFIER = { 0x30, 0x0D, 0x06, 0x09, 0x2A, (byte) 0x86, 0x48,
+			(byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x01, 0x05, 0x00 };
+
+	/** id-ecPublicKey (1.2.840.10045.2.1) 的OID */
+	private static final byte[] EC_PUBLIC_KEY_OID = { 0x06, 0x07, 0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x02,
+			0x01 };
+
+	/** Base64字元對應的數值，-1為非Base64字元 */
+	private static final byte[] BASE64_VALUES = new byte[256];
+
+	static {
+		Arrays.fill(BASE64_VALUES, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+
+	private PemParser() {
+	}
+
+	/**
+	 * 解析所有PEM區塊，區塊外的文字(例如說明)會被略過
+	 *
+	 * @param data 檔案內容，不會改變其position
+	 * @return 依出現順序排列的區塊
+	 */
+	static List<PemBlock> parse(ByteBuffer data) {
+		List<PemBlock> blocks = new ArrayList<>();
+		int position = data.position();
+		int limit = data.limit();
+		while (true) {
+			int begin = indexOf(data, BEGIN, position, limit);
+			if (begin < 0)
+				return blocks;
+			int typeStart = begin + BEGIN.length;
+			int typeEnd = indexOf(data, DASHES, typeStart, limit);
+			if (typeEnd < 0)
+				throw new IllegalArgumentException("PEM BEGIN line is not terminated.");
+			String type = ascii(data, typeStart, typeEnd);
+
+			int bodyStart = typeEnd + DASHES.length;
+			int end = indexOf(data, END, bodyStart, limit);
+			if (end < 0)
+				throw new IllegalArgumentException("No END line for PEM block " + type + ".");
+			int endTypeEnd = indexOf(data, DASHES, end + END.length, limit);
+			if (endTypeEnd < 0 || !type.equals(ascii(data, end + END.length, endTypeEnd)))
+				throw new IllegalArgumentException("PEM END line does not match " + type + ".");
+
+			blocks.add(new PemBlock(type, decodeBase64(data, bodyStart, end)));
+			position = endTypeEnd + DASHES.length;
+		}
+	}
+
+	/**
+	 * 取得第一個類型符合的區塊
+	 *
+	 * @return 找不到時為null
+	 */
+	static PemBlock first(List<PemBlock> blocks, String... types) {
+		for (PemBlock block : blocks) {
+			for (String type : types) {
+				if (block.type.equals(type))
+					return block;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 將PKCS#1的RSAPrivateKey包裝為PKCS#8的PrivateKeyInfo
+	 */
+	static byte[] pkcs1PrivateKeyToPkcs8(byte[] pkcs1) {
+		byte[] version = { 0x02, 0x01, 0x00 };
+		byte[] privateKey = derElement(0x04, pkcs1);
+		return derElement(0x30, version, RSA_ALGORITHM_IDENTIFIER, privateKey);
+	}
+
+	/**
+	 * 將SEC1的ECPrivateKey(OpenSSL的 EC PRIVATE KEY)包裝為PKCS#8的PrivateKeyInfo，
+	 * 曲線取自ECPrivateKey中的parameters欄位
+	 */
+	static byte[] sec1PrivateKeyToPkcs8(byte[] sec1) {
+		ByteBuffer der = ByteBuffer.wrap(sec1);
+		readHeader(der, 0x30);
+		skipElement(der, 0x02);
+		skipElement(der, 0x04);
+		int parametersLength = readHeader(der, 0xA0);
+		byte[] curve = new byte[parametersLength];
+		der.get(curve);
+		if (curve.length == 0 || curve[0] != 0x06)
+			throw new IllegalArgumentException("EC private key has no named curve.");
+		byte[] version = { 0x02, 0x01, 0x00 };
+		return derElement(0x30, version, derElement(0x30, EC_PUBLIC_KEY_OID, curve), derElement(0x04, sec1));
+	}
+
+	/**
+	 * 將PKCS#1的RSAPublicKey包裝為X.509的SubjectPublicKeyInfo
+	 */
+	static byte[] pkcs1PublicKeyToX509(byte[] pkcs1) {
+		byte[] bitString = new byte[pkcs1.length + 1];
+		System.arraycopy(pkcs1, 0, bitString, 1, pkcs1.length);
+		return derElement(0x30, RSA_ALGORITHM_IDENTIFIER, derElement(0x03, bitString));
+	}
+
+	/**
+	 * 解碼[start, end)之間的Base64，略過空白與換行；含有其他字元(例如加密PEM的表頭)時拋出例外
+	 */
+	private static byte[] decodeBase64(ByteBuffer data, int start, int end) {
+		// 第一次掃描計算有效字元數，以便配置剛好大小的陣列
+		int characters = 0;
+		int padding = 0;
+		for (int i = start; i < end; i++) {
+			int c = data.get(i) & 0xFF;
+			if (BASE64_VALUES[c] >= 0) {
+				if (padding > 0)
+					throw new IllegalArgumentException("Invalid Base64 padding in PEM body.");
+				characters++;
+			} else if (c == '=') {
+				padding++;
+			} else if (!isWhitespace(c)) {
+				throw new IllegalArgumentException(
+						"Unsupported character in PEM body, encrypted PEM files are not supported.");
+			}
+		}
+		if (padding > 2 || characters % 4 == 1 || (padding > 0 && (characters + padding) % 4 != 0))
+			throw new IllegalArgumentException("Invalid Base64 length in PEM body.");
+
+		byte[] decoded = new byte[characters * 3 / 4];
+		int bits = 0;
+		int bitCount = 0;
+		int out = 0;
+		for (int i = start; i < end; i++) {
+			int value = BASE64_VALUES[data.get(i) & 0xFF];
+			if (value < 0)
+				continue;
+			bits = (bits << 6) | value;
+			bitCount += 6;
+			if (bitCount >= 8) {
+				bitCount -= 8;
+				decoded[out++] = (byte) (bits >> bitCount);
+			}
+		}
+		return decoded;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == '\n' || c == '\r' || c == ' ' || c == '\t';
+	}
+
+	private static int indexOf(ByteBuffer data, byte[] pattern, int from, int limit) {
+		outer: for (int i = from; i <= limit - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data.get(i + j) != pattern[j])
+					continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static String ascii(ByteBuffer data, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++) {
+			bytes[i - start] = data.get(i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * 讀取DER元素的tag與長度，position移至內容開頭
+	 *
+	 * @return 內容長度
+	 */
+	private static int readHeader(ByteBuffer der, int expectedTag) {
+		if (der.remaining() < 2 || (der.get() & 0xFF) != expectedTag)
+			throw new IllegalArgumentException("Unexpected DER structure.");
+		int length = der.get() & 0xFF;
+		if (length >= 0x80) {
+			int lengthBytes = length & 0x7F;
+			if (lengthBytes > 3 || der.remaining() < lengthBytes)
+				throw new IllegalArgumentException("Unexpected DER length.");
+			length = 0;
+			for (int i = 0; i < lengthBytes; i++) {
+				length = (length << 8) | (der.get() & 0xFF);
+			}
+		}
+		if (length > der.remaining())
+			throw new IllegalArgumentException("DER element is truncated.");
+		return length;
+	}
+
+	private static void skipElement(ByteBuffer der, int expectedTag) {
+		int length = readHeader(der, expectedTag);
+		der.position(der.position() + length);
+	}
+
+	/**
+	 * 組成DER元素：tag | 長度 | 內容
+	 */
+	private static byte[] derElement(int tag, byte[]... contents) {
+		int length = 0;
+		for (byte[] content : contents) {
+			length += content.length;
+		}
+		byte[] lengthBytes;
+		if (length < 0x80) {
+			lengthBytes = new byte[] { (byte) length };
+		} else if (length < 0x100) {
+			lengthBytes = new byte[] { (byte) 0x81, (byte) length };
+		} else if (length < 0x10000) {
+			lengthBytes = new byte[] { (byte) 0x82, (byte) (length >> 8), (byte) length };
+		} else {
+			lengthBytes = new byte[] { (byte) 0x83, (byte) (length >> 16), (byte) (length >> 8), (byte) length };
+		}
+		ByteBuffer element = ByteBuffer.allocate(1 + lengthBytes.length + length);
+		element.put((byte) tag).put(lengthBytes);
+		for (byte[] content : contents) {
+			element.put(content);
+		}
+		return element.array();
+	}
+
+	static final class PemBlock {
+
+		/** BEGIN 標記後的類型，例如 PUBLIC KEY、RSA PRIVATE KEY */
+		final String type;
+		/** 解碼後的DER內容 */
+		final byte[] der;
+
+		PemBlock(String type, byte[] der) {
+			this.type = type;
+			this.der = der;
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package utility;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.security.Key;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -17,24 +20,44 @@ import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
-import java.util.Base64.Decoder;
 import java.util.Base64.Encoder;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * 針對金鑰操作的工具類別
+ * 針對金鑰操作的工具類別<p>
+ * 除RSA外亦支援EC(P-256/P-384/P-521)、X25519/X448與Ed25519/Ed448，
+ * 橢圓曲線金鑰產生僅需微秒等級，金鑰與密文也比RSA小得多。<br>
+ * KeyPairGenerator(含其SecureRandom)與KeyFactory於第一次產生、讀取金鑰時才建立，
+ * 只讀取金鑰的程式不需負擔產生金鑰的初始化；演算法或金鑰長度不支援時，於該次操作時才拋出例外。
  * 
  * @author EnixLin
  *
  */
 public class RSAKeyUtil {
 
-	private KeyPairGenerator keyPairGenerator;
+	/** 第一次產生金鑰時才建立，只讀取金鑰時不需要 */
+	private volatile KeyPairGenerator keyPairGenerator;
 	private String algorithm;
 	private int keySize;
-	private KeyFactory factory;
-	private Decoder decoder;
+	private boolean keySizeSetted;
+	/** 第一次讀取金鑰時才建立 */
+	private volatile KeyFactory factory;
 	private Encoder encoder;
+	/** 金鑰快取，數量上限為0時不使用快取 */
+	private int keyCacheSize;
+	private Duration keyCacheTtl;
+	private KeyCache keyCache;
+	/** 預先產生金鑰的池，未設定時直接產生 */
+	private KeyPairPool keyPairPool;
+	/** 統計數據，未設定時不記錄 */
+	private CryptoMetrics metrics;
+	/** 大量產生時，每個工作執行緒各自的KeyPairGenerator */
+	private final ThreadLocal<Map<Integer, KeyPairGenerator>> bulkGenerators = ThreadLocal.withInitial(HashMap::new);
 
 	/**
 	 * 預設值使用RSA，長度2048
@@ -42,7 +65,7 @@ public class RSAKeyUtil {
 	private RSAKeyUtil() {
 		this.algorithm = "RSA";
 		this.keySize = 2048;
-		decoder = Base64.getMimeDecoder();
+		this.keyCacheTtl = Duration.ZERO;
 		encoder = Base64.getMimeEncoder();
 	}
 
@@ -59,41 +82,95 @@ public class RSAKeyUtil {
 		/** 預設數值 */
 		private RSAKeyUtil keyUtil = new RSAKeyUtil();
 
-//		public Builder setAlgorithm(String algorithm) {
-//
-//			keyUtil.algorithm = algorithm;
-//			return this;
-//		}
+		/**
+		 * 金鑰演算法，預設為RSA<br>
+		 * EC：以金鑰長度256/384/521選擇P-256/P-384/P-521曲線，未設定長度時為P-256<br>
+		 * X25519、X448：ECDH金鑰交換用，可用於{@link EncryptionUtil}的信封模式<br>
+		 * Ed25519、Ed448：僅供簽章，需Java 15以上<br>
+		 * 曲線固定的演算法會忽略設定的金鑰長度
+		 */
+		public Builder setAlgorithm(String algorithm) {
+
+			keyUtil.algorithm = algorithm;
+			return this;
+		}
 
 		public Builder setKeySize(int keySize) {
 
 			keyUtil.keySize = keySize;
+			keyUtil.keySizeSetted = true;
+			return this;
+		}
+
+		/**
+		 * 開啟讀取金鑰的快取，超過數量時淘汰最久未使用的金鑰<br>
+		 * 每次讀取仍會比對檔案修改時間與大小，檔案變動時重新讀取
+		 * 
+		 * @param keyCacheSize 最多保留的金鑰數，0為不使用快取(預設)
+		 */
+		public Builder setKeyCacheSize(int keyCacheSize) {
+
+			keyUtil.keyCacheSize = keyCacheSize;
+			return this;
+		}
+
+		/**
+		 * 快取中金鑰的存活時間，超過後重新讀取
+		 * 
+		 * @param keyCacheTtl 存活時間，Duration.ZERO為不限(預設)
+		 */
+		public Builder setKeyCacheTtl(Duration keyCacheTtl) {
+
+			keyUtil.keyCacheTtl = keyCacheTtl;
+			return this;
+		}
+
+		/**
+		 * 設定預先產生金鑰的池，{@link RSAKeyUtil#generateKeyPair()}會優先由池中取用
+		 * 
+		 * @param keyPairPool 演算法須相同，且有預先產生此工具設定的金鑰長度
+		 */
+		public Builder setKeyPairPool(KeyPairPool keyPairPool) {
+
+			keyUtil.keyPairPool = keyPairPool;
+			return this;
+		}
+
+		/** 記錄產生、讀取與儲存金鑰的次數與延遲，預設不記錄 */
+		public Builder setMetrics(CryptoMetrics metrics) {
+
+			keyUtil.metrics = metrics;
 			return this;
 		}
 
 		public RSAKeyUtil build() {
 
-			KeyPairGenerator keyPairGenerator;
-			try {
-				keyPairGenerator = KeyPairGenerator.getInstance(keyUtil.getAlgorithm());
-				keyPairGenerator.initialize(keyUtil.getKeySize(), new SecureRandom());
-				keyUtil.keyPairGenerator = keyPairGenerator;
-				keyUtil.factory = KeyFactory.getInstance(keyUtil.algorithm);
-			} catch (NoSuchAlgorithmException e) {
-				throw new RuntimeException("No Such Algorithm. Please check again.");
-			}
+			int fixedKeySize = KeyAlgorithms.fixedKeySize(keyUtil.algorithm);
+			if (fixedKeySize > 0)
+				keyUtil.keySize = fixedKeySize;
+			else if (!keyUtil.keySizeSetted && KeyAlgorithms.defaultKeySize(keyUtil.algorithm) > 0)
+				keyUtil.keySize = KeyAlgorithms.defaultKeySize(keyUtil.algorithm);
+			if (keyUtil.keyPairPool != null && (!keyUtil.keyPairPool.getAlgorithm().equals(keyUtil.algorithm)
+					|| !keyUtil.keyPairPool.supports(keyUtil.keySize)))
+				throw new RuntimeException("KeyPairPool does not pre-generate " + keyUtil.algorithm + " keys of size "
+						+ keyUtil.keySize + ".");
+			if (keyUtil.keyCacheSize > 0)
+				keyUtil.keyCache = new KeyCache(keyUtil.keyCacheSize, keyUtil.keyCacheTtl.toNanos());
 			return keyUtil;
 		}
 	}
 
 	/**
 	 * 取得產生的KeyPair<br>
-	 * 公鑰以X.509規格產出，私鑰以PKCS#8規格產出
+	 * 公鑰以X.509規格產出，私鑰以PKCS#8規格產出<br>
+	 * 有設定{@link KeyPairPool}時優先取用池中預先產生的金鑰
 	 * 
 	 * @return
 	 */
 	public KeyPair generateKeyPair() {
-		return keyPairGenerator.generateKeyPair();
+		if (keyPairPool != null)
+			return timedGenerate(keySize, () -> keyPairPool.take(keySize));
+		return timedGenerate(keySize, () -> getKeyPairGenerator().generateKeyPair());
 	}
 
 	/**
@@ -118,13 +195,19 @@ public class RSAKeyUtil {
 		privatePemFile.append(privatePemBody + System.lineSeparator());
 		privatePemFile.append("-----END PRIVATE KEY-----");
 
+		KeyEvent event = KeyEvent.start();
+		long start = System.nanoTime();
+		boolean success = false;
 		try {
 			Files.write(publicKeyPath, publicPemFile.toString().getBytes(), StandardOpenOption.CREATE,
 					StandardOpenOption.TRUNCATE_EXISTING);
 			Files.write(privateKeyPath, privatePemFile.toString().getBytes(), StandardOpenOption.CREATE,
 					StandardOpenOption.TRUNCATE_EXISTING);
+			success = true;
 		} catch (IOException e) {
 			throw new RuntimeException("IOException：Saving key file failure." + e.getMessage());
+		} finally {
+			recordSave(event, "PEM", publicKeyPath, publicKey, start, success);
 		}
 	}
 
@@ -152,13 +235,19 @@ public class RSAKeyUtil {
 		PublicKey publicKey = keyPair.getPublic();
 		PrivateKey privateKey = keyPair.getPrivate();
 
+		KeyEvent event = KeyEvent.start();
+		long start = System.nanoTime();
+		boolean success = false;
 		try {
 			Files.write(publicKeyPath, publicKey.getEncoded(), StandardOpenOption.CREATE,
 					StandardOpenOption.TRUNCATE_EXISTING);
 			Files.write(privateKeyPath, privateKey.getEncoded(), StandardOpenOption.CREATE,
 					StandardOpenOption.TRUNCATE_EXISTING);
+			success = true;
 		} catch (IOException e) {
 			throw new RuntimeException("IOException：Saving key file failure." + e.getMessage());
+		} finally {
+			recordSave(event, "DER", publicKeyPath, publicKey, start, success);
 		}
 	}
 
@@ -174,6 +263,120 @@ public class RSAKeyUtil {
 		saveKeyPairInDER(keyPair, publicKeyPath, privateKeyPath);
 	}
 
+	/**
+	 * 大量產生KeyPair，分散至所有CPU核心平行產生<br>
+	 * 每個工作執行緒各自持有KeyPairGenerator與SecureRandom，不互相競爭
+	 * 
+	 * @param count 產生數量
+	 * @return
+	 */
+	public List<KeyPair> generateKeyPairs(int count) {
+		return generateKeyPairs(count, keySize);
+	}
+
+	/**
+	 * 大量產生指定長度的KeyPair，分散至所有CPU核心平行產生
+	 * 
+	 * @param count   產生數量
+	 * @param keySize 金鑰長度
+	 * @return
+	 */
+	public List<KeyPair> generateKeyPairs(int count, int keySize) {
+		return IntStream.range(0, count).parallel()
+				.mapToObj(i -> timedGenerate(keySize,
+						() -> bulkGenerators.get().computeIfAbsent(keySize, this::newKeyPairGenerator).generateKeyPair()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * 將多組key平行存於指定目錄，PEM編碼<br>
+	 * 檔名為 publicKey_{序號}.pem 與 privateKey_{序號}.pem，序號即在list中的位置
+	 * 
+	 * @param keyPairs
+	 * @param directory 存放目錄，不存在時自動建立
+	 */
+	public void saveKeyPairsInPEM(List<KeyPair> keyPairs, Path directory) {
+		createDirectories(directory);
+		IntStream.range(0, keyPairs.size()).parallel().forEach(i -> saveKeyPairInPEM(keyPairs.get(i),
+				directory.resolve("publicKey_" + i + ".pem"), directory.resolve("privateKey_" + i + ".pem")));
+	}
+
+	/**
+	 * 將多組key平行存於指定目錄，DER編碼(二進位)<br>
+	 * 檔名為 publicKey_{序號}.der 與 privateKey_{序號}.der，序號即在list中的位置
+	 * 
+	 * @param keyPairs
+	 * @param directory 存放目錄，不存在時自動建立
+	 */
+	public void saveKeyPairsInDER(List<KeyPair> keyPairs, Path directory) {
+		createDirectories(directory);
+		IntStream.range(0, keyPairs.size()).parallel().forEach(i -> saveKeyPairInDER(keyPairs.get(i),
+				directory.resolve("publicKey_" + i + ".der"), directory.resolve("privateKey_" + i + ".der")));
+	}
+
+	/**
+	 * 將多組key打包存於單一金鑰庫檔案，讀取時以{@link #openPackedKeyStore(Path)}映射
+	 * 
+	 * @param keyPairs 金鑰ID與KeyPair的對應
+	 * @param path     存放位置，含檔名
+	 */
+	public void savePackedKeyStore(Map<String, KeyPair> keyPairs, Path path) {
+		PackedKeyStore.Writer writer = new PackedKeyStore.Writer();
+		keyPairs.forEach(writer::addKeyPair);
+		writer.write(path);
+	}
+
+	/**
+	 * 映射金鑰庫檔案，金鑰於第一次取用時才解碼
+	 * 
+	 * @param path 由{@link #savePackedKeyStore(Map, Path)}或{@link PackedKeyStore.Writer}寫出的檔案
+	 * @return
+	 */
+	public PackedKeyStore openPackedKeyStore(Path path) {
+		return PackedKeyStore.open(path);
+	}
+
+	private void createDirectories(Path directory) {
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new RuntimeException("IOException：Creating key directory failure." + e.getMessage());
+		}
+	}
+
+	private KeyPairGenerator newKeyPairGenerator(int keySize) {
+		return KeyAlgorithms.newKeyPairGenerator(algorithm, keySize, new SecureRandom());
+	}
+
+	private KeyPairGenerator getKeyPairGenerator() {
+		KeyPairGenerator generator = keyPairGenerator;
+		if (generator == null) {
+			synchronized (this) {
+				generator = keyPairGenerator;
+				if (generator == null)
+					keyPairGenerator = generator = newKeyPairGenerator(keySize);
+			}
+		}
+		return generator;
+	}
+
+	private KeyFactory getFactory() {
+		KeyFactory keyFactory = factory;
+		if (keyFactory == null) {
+			synchronized (this) {
+				keyFactory = factory;
+				if (keyFactory == null) {
+					try {
+						factory = keyFactory = KeyFactory.getInstance(KeyAlgorithms.keyFactoryAlgorithm(algorithm));
+					} catch (NoSuchAlgorithmException e) {
+						throw new RuntimeException("No Such Algorithm. Please check again.");
+					}
+				}
+			}
+		}
+		return keyFactory;
+	}
+
 	/**
 	 * 讀取二進位的公鑰，限定X509格式
 	 * 
@@ -181,26 +384,44 @@ public class RSAKeyUtil {
 	 * @return
 	 */
 	public PublicKey readDERPublicKey(Path publicKeyPath) {
+		return readThroughCache(publicKeyPath, "DER public", PublicKey.class, () -> loadDERPublicKey(publicKeyPath));
+	}
+
+	private PublicKey loadDERPublicKey(Path publicKeyPath) {
 		byte[] publicKeyBytes = readAllBytes(publicKeyPath);
 		KeySpec publicKeySpec = new X509EncodedKeySpec(publicKeyBytes);
 		return generatePublic(publicKeySpec);
 	}
 
 	/**
-	 * 讀取PEM格式(Base64)的公鑰，限定X509格式
+	 * 讀取PEM格式(Base64)的公鑰，可為X509(PUBLIC KEY)或PKCS#1(RSA PUBLIC KEY)格式，
+	 * 檔案含多個區塊時取第一個公鑰
 	 * 
 	 * @param publicKeyPath 讀取位置
 	 * @return
 	 */
 	public PublicKey readPEMPublicKey(Path publicKeyPath) {
-		StringBuilder keyBody = new StringBuilder();
-		readSublines(publicKeyPath).stream().forEach(line -> {
-			keyBody.append(line);
-		});
-		byte[] publicKeyBase64Bytes = keyBody.toString().getBytes();
-		byte[] publicKeyBytes = decoder.decode(publicKeyBase64Bytes);
-		KeySpec publicKeySpec = new X509EncodedKeySpec(publicKeyBytes);
-		return generatePublic(publicKeySpec);
+		return readThroughCache(publicKeyPath, "PEM public", PublicKey.class, () -> loadPEMPublicKey(publicKeyPath));
+	}
+
+	private PublicKey loadPEMPublicKey(Path publicKeyPath) {
+		PemParser.PemBlock block = PemParser.first(readPemBlocks(publicKeyPath), PemParser.PUBLIC_KEY,
+				PemParser.RSA_PUBLIC_KEY);
+		if (block == null)
+			throw new RuntimeException("There is no public key in " + publicKeyPath + ".");
+		return generatePublic(publicKeySpec(block));
+	}
+
+	/**
+	 * 讀取PEM檔案中所有的公鑰區塊，依出現順序排列
+	 * 
+	 * @param publicKeyPath 讀取位置
+	 * @return
+	 */
+	public List<PublicKey> readPEMPublicKeys(Path publicKeyPath) {
+		return readPemBlocks(publicKeyPath).stream()
+				.filter(block -> block.type.equals(PemParser.PUBLIC_KEY) || block.type.equals(PemParser.RSA_PUBLIC_KEY))
+				.map(block -> generatePublic(publicKeySpec(block))).collect(Collectors.toList());
 	}
 
 	/**
@@ -210,26 +431,112 @@ public class RSAKeyUtil {
 	 * @return
 	 */
 	public PrivateKey readDERPrivateKey(Path privateKeyPath) {
+		return readThroughCache(privateKeyPath, "DER private", PrivateKey.class, () -> loadDERPrivateKey(privateKeyPath));
+	}
+
+	private PrivateKey loadDERPrivateKey(Path privateKeyPath) {
 		byte[] privateKeyBytes = readAllBytes(privateKeyPath);
 		KeySpec privateKeySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
 		return generatePrivate(privateKeySpec);
 	}
 
 	/**
-	 * 讀取PEM格式(Base64)的私鑰，限定PKCS8格式
+	 * 讀取PEM格式(Base64)的私鑰，可為PKCS8(PRIVATE KEY)、PKCS#1(RSA PRIVATE KEY)或SEC1(EC PRIVATE KEY)格式，
+	 * OpenSSL產生的私鑰不必先轉換；檔案含多個區塊時取第一個私鑰
 	 * 
 	 * @param privateKeyPath 讀取位置
 	 * @return
 	 */
 	public PrivateKey readPEMPrivateKey(Path privateKeyPath) {
-		StringBuilder keyBody = new StringBuilder();
-		readSublines(privateKeyPath).stream().forEach(line -> {
-			keyBody.append(line);
-		});
-		byte[] privateKeyBase64Bytes = keyBody.toString().getBytes();
-		byte[] privateKeyBytes = decoder.decode(privateKeyBase64Bytes);
-		KeySpec privateKeySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-		return generatePrivate(privateKeySpec);
+		return readThroughCache(privateKeyPath, "PEM private", PrivateKey.class, () -> loadPEMPrivateKey(privateKeyPath));
+	}
+
+	private PrivateKey loadPEMPrivateKey(Path privateKeyPath) {
+		PemParser.PemBlock block = PemParser.first(readPemBlocks(privateKeyPath), PemParser.PRIVATE_KEY,
+				PemParser.RSA_PRIVATE_KEY, PemParser.EC_PRIVATE_KEY);
+		if (block == null)
+			throw new RuntimeException("There is no private key in " + privateKeyPath + ".");
+		return generatePrivate(privateKeySpec(block));
+	}
+
+	/**
+	 * 讀取PEM檔案中所有的私鑰區塊，依出現順序排列
+	 * 
+	 * @param privateKeyPath 讀取位置
+	 * @return
+	 */
+	public List<PrivateKey> readPEMPrivateKeys(Path privateKeyPath) {
+		return readPemBlocks(privateKeyPath).stream()
+				.filter(block -> block.type.equals(PemParser.PRIVATE_KEY)
+						|| block.type.equals(PemParser.RSA_PRIVATE_KEY) || block.type.equals(PemParser.EC_PRIVATE_KEY))
+				.map(block -> generatePrivate(privateKeySpec(block))).collect(Collectors.toList());
+	}
+
+	/**
+	 * 取得金鑰快取的命中、未命中等統計數據，未開啟快取時皆為0
+	 * 
+	 * @return
+	 */
+	public KeyCacheStats getKeyCacheStats() {
+		return keyCache == null ? new KeyCacheStats(0, 0, 0, 0) : keyCache.stats();
+	}
+
+	/**
+	 * 清空金鑰快取
+	 */
+	public void clearKeyCache() {
+		if (keyCache != null)
+			keyCache.clear();
+	}
+
+	private <K extends Key> K readThroughCache(Path path, String format, Class<K> type, Supplier<K> loader) {
+		Supplier<K> timedLoader = () -> timedLoad(path, format, loader);
+		return keyCache == null ? timedLoader.get() : keyCache.get(path, format, type, timedLoader);
+	}
+
+	/**
+	 * 記錄實際由檔案讀取金鑰的耗時，金鑰長度於讀取後才知道
+	 */
+	private <K extends Key> K timedLoad(Path path, String format, Supplier<K> loader) {
+		KeyEvent event = KeyEvent.start();
+		long start = System.nanoTime();
+		K key;
+		try {
+			key = loader.get();
+		} catch (RuntimeException e) {
+			if (metrics != null)
+				metrics.record(CryptoMetrics.Operation.KEY_LOAD, keySize, start, false);
+			event.finish(CryptoMetrics.Operation.KEY_LOAD, format, path, keySize, false);
+			throw e;
+		}
+		int loadedKeySize = CryptoMetrics.keySizeOf(key, keySize);
+		if (metrics != null)
+			metrics.record(CryptoMetrics.Operation.KEY_LOAD, loadedKeySize, start, true);
+		event.finish(CryptoMetrics.Operation.KEY_LOAD, format, path, loadedKeySize, true);
+		return key;
+	}
+
+	private KeyPair timedGenerate(int keySize, Supplier<KeyPair> generator) {
+		KeyEvent event = KeyEvent.start();
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			KeyPair keyPair = generator.get();
+			success = true;
+			return keyPair;
+		} finally {
+			if (metrics != null)
+				metrics.record(CryptoMetrics.Operation.KEY_GENERATE, keySize, start, success);
+			event.finish(CryptoMetrics.Operation.KEY_GENERATE, algorithm, null, keySize, success);
+		}
+	}
+
+	private void recordSave(KeyEvent event, String format, Path path, PublicKey publicKey, long start,
+			boolean success) {
+		int savedKeySize = CryptoMetrics.keySizeOf(publicKey, keySize);
+		if (metrics != null)
+			metrics.record(CryptoMetrics.Operation.KEY_SAVE, savedKeySize, start, success);
+		event.finish(CryptoMetrics.Operation.KEY_SAVE, format, path, savedKeySize, success);
 	}
 
 	private byte[] readAllBytes(Path path) {
@@ -241,24 +548,36 @@ public class RSAKeyUtil {
 	}
 
 	/**
-	 * 取得去頭尾行的List
+	 * 直接在檔案的byte內容上解析所有PEM區塊
 	 * 
 	 * @param path
 	 * @return
 	 */
-	private List<String> readSublines(Path path) {
-		List<String> list;
+	private List<PemParser.PemBlock> readPemBlocks(Path path) {
 		try {
-			list = Files.readAllLines(path);
-			return list.subList(1, list.size() - 1);
-		} catch (IOException e) {
-			throw new RuntimeException("IOException：" + e.getMessage());
+			return PemParser.parse(ByteBuffer.wrap(readAllBytes(path)));
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("Invalid PEM file. " + e.getMessage());
 		}
 	}
 
+	private KeySpec publicKeySpec(PemParser.PemBlock block) {
+		byte[] der = block.type.equals(PemParser.RSA_PUBLIC_KEY) ? PemParser.pkcs1PublicKeyToX509(block.der) : block.der;
+		return new X509EncodedKeySpec(der);
+	}
+
+	private KeySpec privateKeySpec(PemParser.PemBlock block) {
+		byte[] der = block.der;
+		if (block.type.equals(PemParser.RSA_PRIVATE_KEY))
+			der = PemParser.pkcs1PrivateKeyToPkcs8(block.der);
+		else if (block.type.equals(PemParser.EC_PRIVATE_KEY))
+			der = PemParser.sec1PrivateKeyToPkcs8(block.der);
+		return new PKCS8EncodedKeySpec(der);
+	}
+
 	private PublicKey generatePublic(KeySpec publicKeySpec) {
 		try {
-			return factory.generatePublic(publicKeySpec);
+			return getFactory().generatePublic(publicKeySpec);
 		} catch (InvalidKeySpecException e) {
 			throw new RuntimeException("InvalidKeySpecException. Maybe your key is not X509 format." + e.getMessage());
 		}
@@ -266,7 +585,7 @@ public class RSAKeyUtil {
 
 	private PrivateKey generatePrivate(KeySpec privateKeySpeec) {
 		try {
-			return factory.generatePrivate(privateKeySpeec);
+			return getFactory().generatePrivate(privateKeySpeec);
 		} catch (InvalidKeySpecException e) {
 			throw new RuntimeException("InvalidKeySpecException. Maybe your key is not PKCS#8 format. " + e.getMessage());
 		}
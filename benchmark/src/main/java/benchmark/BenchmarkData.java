@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * 各效能測試共用的測試資料
+ * 
+ * @author EnixLin
+ *
+ */
+final class BenchmarkData {
+
+	/** 與 sampleCode 相同的短字串 */
+	static final String MESSAGE = "hello youtube.";
+
+	private BenchmarkData() {
+	}
+
+	static byte[] messageBytes() {
+		return MESSAGE.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 約length個byte的JSON Lines文字，可壓縮的資料
+	 */
+	static byte[] jsonBytes(int length) {
+		StringBuilder json = new StringBuilder(length + 128);
+		for (int i = 0; json.length() < length; i++) {
+			json.append("{\"id\":").append(i).append(",\"user\":\"user").append(i % 97)
+					.append("\",\"level\":\"INFO\",\"message\":\"").append(MESSAGE).append("\"}\n");
+		}
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * length個byte的亂數資料，無法壓縮
+	 */
+	static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+}
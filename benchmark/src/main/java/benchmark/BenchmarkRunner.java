@@ -0,0 +1,39 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 依序以1/2/4/8/16個執行緒執行所有效能測試，並開啟GC profiler觀察配置量<p>
+ * 用法：java -jar target/benchmarks.jar [測試名稱的正規表示式] [執行緒數，以逗號分隔]<br>
+ * 每種執行緒數的結果另存為 jmh-result-{執行緒數}threads.json
+ * 
+ * @author EnixLin
+ *
+ */
+public class BenchmarkRunner {
+
+	private static final String DEFAULT_THREADS = "1,2,4,8,16";
+
+	public static void main(String[] args) throws RunnerException {
+
+		String include = args.length > 0 ? args[0] : "benchmark\\..*";
+		String threadList = args.length > 1 ? args[1] : DEFAULT_THREADS;
+
+		for (String threads : threadList.split(",")) {
+			int threadCount = Integer.parseInt(threads.trim());
+			Options options = new OptionsBuilder()
+					.include(include)
+					.threads(threadCount)
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result("jmh-result-" + threadCount + "threads.json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.CryptoWarmUp;
+import encryption.EncryptionUtil;
+import encryption.RSAKeyUtil;
+
+/**
+ * 冷啟動的耗時：每次量測都在新的JVM中只執行一次<p>
+ * 對應RSAminiTool開啟視窗前建立RSAKeyUtil，以及讀取公鑰後第一次加密的時間。
+ * 金鑰檔的內容為常數，準備時不載入任何加密相關的類別，以免影響量測。
+ *
+ * @author EnixLin
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+
+	private static final String PUBLIC_KEY_PEM = "-----BEGIN PUBLIC KEY-----\n"
+			+ "MIIBIjANBgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEAqs2VH6KZLrptF/jI8U9K\n"
+			+ "Pu+esR3gDuEWDugw3Nj93baOAPhkAcGQ/TCm/tFXGoIlTcKJVPYSYA/jvBBN0I4P\n"
+			+ "2QmFrb4cdUVpS6TWDLkdMeDqYAOBeUco8xOn84JmDBsvPcQDHGZxV4n2MEQZK22o\n"
+			+ "B3qfd1Bgq7+L0RfsuJDELSbj4ep1QDxUl66e5Q/IP9rkEAi+zeGfFMrCSSDV03YA\n"
+			+ "dEqLtHh1oxjQUGBYbaeBe6YueO2Ro3wbXFifUzFl5d2hyjJHCCCqmPJAMjbUeJfr\n"
+			+ "Dk20ivBIqBXrjjKDpd1bz8U+4+0mt0LeF/WtPUx8vBu6IOl2garYO5k7ibtaP9X9\n"
+			+ "ZwIDAQAB\n"
+			+ "-----END PUBLIC KEY-----\n";
+
+	@State(Scope.Benchmark)
+	public static class KeyFileState {
+
+		Path publicKeyPath;
+
+		@Setup
+		public void setup() throws IOException {
+			publicKeyPath = Files.createTempFile("cold-start-benchmark", ".pem");
+			Files.write(publicKeyPath, PUBLIC_KEY_PEM.getBytes(StandardCharsets.US_ASCII));
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			Files.deleteIfExists(publicKeyPath);
+		}
+	}
+
+	/**
+	 * 準備時先執行{@link CryptoWarmUp}並等待完成，相當於使用者選擇金鑰期間背景預熱已結束
+	 */
+	@State(Scope.Benchmark)
+	public static class WarmedUpState extends KeyFileState {
+
+		@Setup
+		public void warmUp() {
+			CryptoWarmUp.start().join();
+		}
+	}
+
+	/** RSAminiTool開啟視窗前建立讀取金鑰用的RSAKeyUtil */
+	@Benchmark
+	public RSAKeyUtil buildKeyUtil() {
+		return new RSAKeyUtil.Builder().build();
+	}
+
+	/** 建立RSAKeyUtil、讀取公鑰、建立EncryptionUtil到第一次加密完成 */
+	@Benchmark
+	public String firstEncryption(KeyFileState state) {
+		return encryptOnce(state.publicKeyPath);
+	}
+
+	/** 背景預熱完成後的第一次加密 */
+	@Benchmark
+	public String firstEncryptionAfterWarmUp(WarmedUpState state) {
+		return encryptOnce(state.publicKeyPath);
+	}
+
+	private static String encryptOnce(Path publicKeyPath) {
+		RSAKeyUtil keyUtil = new RSAKeyUtil.Builder().build();
+		PublicKey publicKey = keyUtil.readPEMPublicKey(publicKeyPath);
+		EncryptionUtil encryptionUtil = new EncryptionUtil.Builder().setPublicKey(publicKey).build();
+		return encryptionUtil.encryptInStringByPublicKey(BenchmarkData.MESSAGE);
+	}
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.DeflateCodec;
+import encryption.EncryptionUtil;
+import encryption.RSAKeyUtil;
+
+/**
+ * 信封模式加密前壓縮的效能，比較JSON與亂數資料在壓縮與不壓縮時的吞吐量<br>
+ * 亂數資料用於確認取樣判斷能跳過無法壓縮的內容，不致明顯變慢
+ *
+ * @author EnixLin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+	@Param({ "json", "random" })
+	private String payload;
+
+	@Param({ "none", "deflate" })
+	private String compression;
+
+	@Param({ "1048576" })
+	private int length;
+
+	private EncryptionUtil encryptionUtil;
+	private byte[] plainBytes;
+	private byte[] envelopeBytes;
+
+	@Setup
+	public void setup() {
+		KeyPair keyPair = new RSAKeyUtil.Builder().build().generateKeyPair();
+		EncryptionUtil.Builder builder = new EncryptionUtil.Builder().setPublicKey(keyPair.getPublic())
+				.setPrivateKey(keyPair.getPrivate());
+		if (compression.equals("deflate"))
+			builder.setCompressionCodec(new DeflateCodec());
+		encryptionUtil = builder.build();
+		plainBytes = payload.equals("json") ? BenchmarkData.jsonBytes(length) : BenchmarkData.randomBytes(length);
+		envelopeBytes = encryptionUtil.encryptInEnvelopeBytesByPublicKey(plainBytes);
+	}
+
+	@Benchmark
+	public byte[] encryptInEnvelope() {
+		return encryptionUtil.encryptInEnvelopeBytesByPublicKey(plainBytes);
+	}
+
+	@Benchmark
+	public byte[] decryptEnvelope() {
+		return encryptionUtil.decryptEnvelopeByPrivateKey(envelopeBytes);
+	}
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.CryptoMetrics;
+import encryption.EncryptionUtil2;
+import encryption.RSAKeyUtil;
+
+/**
+ * EncryptionUtil2 的加解密效能，所有執行緒共用同一個實例，可觀察Cipher池在多執行緒下的擴展性<br>
+ * metrics 參數比較開啟統計前後的差異
+ * 
+ * @author EnixLin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionUtil2Benchmark {
+
+	@Param({ "512", "1024", "2048", "4096" })
+	private int keySize;
+
+	@Param({ "false", "true" })
+	private boolean metrics;
+
+	private EncryptionUtil2 encryptionUtil;
+	private String message;
+	private byte[] messageBytes;
+	private String encryptedString;
+	private byte[] encryptedBytes;
+
+	@Setup
+	public void setup() {
+		KeyPair keyPair = new RSAKeyUtil.Builder().setKeySize(keySize).build().generateKeyPair();
+		encryptionUtil = new EncryptionUtil2.Builder().setKeySize(keySize).setPublicKey(keyPair.getPublic())
+				.setPrivateKey(keyPair.getPrivate()).setMetrics(metrics ? new CryptoMetrics() : null).build();
+		message = BenchmarkData.MESSAGE;
+		messageBytes = BenchmarkData.messageBytes();
+		encryptedString = encryptionUtil.encryptInStringByPublicKey(message);
+		encryptedBytes = encryptionUtil.encryptInBytesByPublicKey(messageBytes);
+	}
+
+	@Benchmark
+	public String encryptInStringByPublicKey() {
+		return encryptionUtil.encryptInStringByPublicKey(message);
+	}
+
+	@Benchmark
+	public String decryptInStringByPrivateKey() {
+		return encryptionUtil.decryptInStringByPrivateKey(encryptedString);
+	}
+
+	@Benchmark
+	public byte[] encryptInBytesByPublicKey() {
+		return encryptionUtil.encryptInBytesByPublicKey(messageBytes);
+	}
+
+	@Benchmark
+	public byte[] decryptByPrivateKey() {
+		return encryptionUtil.decryptByPrivateKey(encryptedBytes);
+	}
+}
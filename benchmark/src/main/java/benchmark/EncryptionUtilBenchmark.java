@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.EncryptionUtil;
+import encryption.RSAKeyUtil;
+
+/**
+ * EncryptionUtil 的加解密效能，此類別非執行緒安全，因此每個執行緒各自持有一個實例
+ * 
+ * @author EnixLin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncryptionUtilBenchmark {
+
+	@Param({ "512", "1024", "2048", "4096" })
+	private int keySize;
+
+	private EncryptionUtil encryptionUtil;
+	private String message;
+	private byte[] messageBytes;
+	private String encryptedString;
+	private byte[] encryptedBytes;
+
+	@Setup
+	public void setup() {
+		KeyPair keyPair = new RSAKeyUtil.Builder().setKeySize(keySize).build().generateKeyPair();
+		encryptionUtil = new EncryptionUtil.Builder().setKeySize(keySize).setPublicKey(keyPair.getPublic())
+				.setPrivateKey(keyPair.getPrivate()).build();
+		message = BenchmarkData.MESSAGE;
+		messageBytes = BenchmarkData.messageBytes();
+		encryptedString = encryptionUtil.encryptInStringByPublicKey(message);
+		encryptedBytes = encryptionUtil.encryptInBytesByPublicKey(messageBytes);
+	}
+
+	@Benchmark
+	public String encryptInStringByPublicKey() {
+		return encryptionUtil.encryptInStringByPublicKey(message);
+	}
+
+	@Benchmark
+	public String decryptInStringByPrivateKey() {
+		return encryptionUtil.decryptInStringByPrivateKey(encryptedString);
+	}
+
+	@Benchmark
+	public byte[] encryptInBytesByPublicKey() {
+		return encryptionUtil.encryptInBytesByPublicKey(messageBytes);
+	}
+
+	@Benchmark
+	public byte[] decryptByPrivateKey() {
+		return encryptionUtil.decryptByPrivateKey(encryptedBytes);
+	}
+}
@@ -0,0 +1,125 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.RSAKeyUtil;
+
+/**
+ * RSAKeyUtil 的金鑰產生與讀取效能
+ * 
+ * @author EnixLin
+ *
+ */
+@Fork(1)
+public class RSAKeyUtilBenchmark {
+
+	/**
+	 * 每個執行緒各自的RSAKeyUtil，KeyPairGenerator不共用
+	 */
+	@State(Scope.Thread)
+	public static class GenerateState {
+
+		@Param({ "512", "1024", "2048", "4096" })
+		int keySize;
+
+		RSAKeyUtil keyUtil;
+
+		@Setup
+		public void setup() {
+			keyUtil = new RSAKeyUtil.Builder().setKeySize(keySize).build();
+		}
+	}
+
+	/**
+	 * 預先寫出PEM與DER格式的私鑰，所有執行緒讀取同一組檔案
+	 */
+	@State(Scope.Benchmark)
+	public static class KeyFileState {
+
+		@Param({ "512", "1024", "2048", "4096" })
+		int keySize;
+
+		Path directory;
+		Path pemPrivateKeyPath;
+		Path derPrivateKeyPath;
+
+		@Setup
+		public void setup() throws IOException {
+			RSAKeyUtil keyUtil = new RSAKeyUtil.Builder().setKeySize(keySize).build();
+			KeyPair keyPair = keyUtil.generateKeyPair();
+			directory = Files.createTempDirectory("rsa-key-benchmark");
+			pemPrivateKeyPath = directory.resolve("privateKey.pem");
+			derPrivateKeyPath = directory.resolve("privateKey.der");
+			keyUtil.saveKeyPairInPEM(keyPair, directory.resolve("publicKey.pem"), pemPrivateKeyPath);
+			keyUtil.saveKeyPairInDER(keyPair, directory.resolve("publicKey.der"), derPrivateKeyPath);
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			try (var files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator)
+					Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * 每個執行緒各自的讀取用RSAKeyUtil
+	 */
+	@State(Scope.Thread)
+	public static class ReaderState {
+
+		RSAKeyUtil keyUtil;
+
+		@Setup
+		public void setup() {
+			keyUtil = new RSAKeyUtil.Builder().build();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2, time = 5)
+	@Measurement(iterations = 3, time = 5)
+	public KeyPair generateKeyPair(GenerateState state) {
+		return state.keyUtil.generateKeyPair();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public PrivateKey readPEMPrivateKey(KeyFileState files, ReaderState reader) {
+		return reader.keyUtil.readPEMPrivateKey(files.pemPrivateKeyPath);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public PrivateKey readDERPrivateKey(KeyFileState files, ReaderState reader) {
+		return reader.keyUtil.readDERPrivateKey(files.derPrivateKeyPath);
+	}
+}
@@ -0,0 +1,78 @@
+package benchmark;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import encryption.RSAKeyUtil;
+import encryption.SignatureUtil;
+
+/**
+ * SignatureUtil 的簽章與驗證效能，所有執行緒共用同一個實例<br>
+ * verifyAll 一次驗證 BATCH_SIZE 筆，以平行模式處理，結果以每筆計算
+ *
+ * @author EnixLin
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignatureUtilBenchmark {
+
+	private static final int BATCH_SIZE = 1024;
+
+	@Param({ "1024", "2048", "4096" })
+	private int keySize;
+
+	private SignatureUtil signatureUtil;
+	private byte[] messageBytes;
+	private byte[] signature;
+	private byte[][] batchData;
+	private byte[][] batchSignatures;
+
+	@Setup
+	public void setup() {
+		KeyPair keyPair = new RSAKeyUtil.Builder().setKeySize(keySize).build().generateKeyPair();
+		signatureUtil = new SignatureUtil.Builder().setPrivateKey(keyPair.getPrivate())
+				.setPublicKey(keyPair.getPublic()).build();
+		messageBytes = BenchmarkData.messageBytes();
+		signature = signatureUtil.sign(messageBytes);
+		batchData = new byte[BATCH_SIZE][];
+		batchSignatures = new byte[BATCH_SIZE][];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			batchData[i] = (BenchmarkData.MESSAGE + i).getBytes();
+			batchSignatures[i] = signatureUtil.sign(batchData[i]);
+		}
+	}
+
+	@Benchmark
+	public byte[] sign() {
+		return signatureUtil.sign(messageBytes);
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return signatureUtil.verify(messageBytes, signature);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public boolean[] verifyAllInParallel() {
+		return signatureUtil.verifyAll(batchData, batchSignatures, true);
+	}
+}